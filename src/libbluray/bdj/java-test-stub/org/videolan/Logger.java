@@ -0,0 +1,88 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+/*
+ * Logger for checks and benchmarks ("ant test").
+ *
+ * Same interface as BD-J Logger, but without native log output
+ * and without capturing System.out / System.err.
+ * Only errors and warnings are printed.
+ */
+
+public class Logger {
+
+    public static final int TRACE   = 0;
+    public static final int INFO    = 1;
+    public static final int WARNING = 2;
+    public static final int ERROR   = 3;
+    public static final int OFF     = 4;
+
+    private String name;
+
+    public static Logger getLogger(String name) {
+        return new Logger(name);
+    }
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    public boolean isEnabled(int level) {
+        return level >= WARNING;
+    }
+
+    public void trace(String msg) {
+    }
+
+    public void info(String msg) {
+    }
+
+    public void warning(String msg) {
+        System.err.println(name + ": WARNING: " + msg);
+    }
+
+    public void error(String msg) {
+        System.err.println(name + ": ERROR: " + msg);
+    }
+
+    public void unimplemented() {
+        unimplemented(null);
+    }
+
+    public void unimplemented(String func) {
+        System.err.println(name + ": UNIMPLEMENTED: " + func);
+    }
+
+    public static String dumpStack() {
+        return dumpStack(new Exception("Stack trace"));
+    }
+
+    public static String dumpStack(Throwable t) {
+        StackTraceElement e[] = t.getStackTrace();
+        StringBuffer dump = new StringBuffer();
+        for (int i = 0; i < e.length; i++) {
+            dump.append("\t");
+            dump.append(e[i].toString());
+            dump.append("\n");
+        }
+        return dump.toString();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.io.PrintStream;
+import java.util.Random;
+
+/*
+ * Check BDAlphaBlend blending modes against reference DIVIDE mode.
+ *
+ * All (source alpha, destination alpha, source, destination) combinations
+ * are tested. Each pixel carries three destination values per source value.
+ * Span blending is checked against per-pixel blending.
+ *
+ * Run with "ant test".
+ */
+
+public class BDAlphaBlendCheck {
+
+    private static final int MAX_ERRORS = 10;
+
+    private static PrintStream out;
+    private static int errors = 0;
+
+    public static void main(String[] args) {
+        out = System.out;
+
+        long start = System.currentTimeMillis();
+
+        checkModes();
+        checkSpan();
+
+        long time = System.currentTimeMillis() - start;
+        if (errors > 0) {
+            out.println("BDAlphaBlend: " + errors + " errors (" + time + " ms)");
+            System.exit(1);
+        }
+        out.println("BDAlphaBlend: all modes identical (" + time + " ms)");
+        System.exit(0);
+    }
+
+    private static void checkModes() {
+        int[] src  = new int[256 * 86];
+        int[] dest = new int[256 * 86];
+        int[] ref  = new int[256 * 86];
+
+        for (int As = 0; As < 256; As++) {
+            for (int Ad = 0; Ad < 256; Ad++) {
+                int n = 0;
+                for (int s = 0; s < 256; s++) {
+                    for (int d = 0; d < 256; d += 3) {
+                        src[n]  = (As << 24) | (s << 16) | (s << 8) | s;
+                        dest[n] = (Ad << 24) | (d << 16) | (Math.min(d + 1, 255) << 8) | Math.min(d + 2, 255);
+                        n++;
+                    }
+                }
+
+                BDAlphaBlend.setMode(BDAlphaBlend.DIVIDE);
+                for (int i = 0; i < n; i++) {
+                    ref[i] = BDAlphaBlend.blend(dest[i], src[i]);
+                }
+                check("TABLE", BDAlphaBlend.TABLE, src, dest, ref, n);
+                /* SWAR kernel is used only with opaque destination */
+                if (Ad == 255) {
+                    check("SWAR", BDAlphaBlend.SWAR, src, dest, ref, n);
+                }
+            }
+        }
+    }
+
+    private static void check(String name, int mode, int[] src, int[] dest, int[] ref, int n) {
+        BDAlphaBlend.setMode(mode);
+        for (int i = 0; i < n; i++) {
+            int result = BDAlphaBlend.blend(dest[i], src[i]);
+            if (result != ref[i]) {
+                error(name + ": src=" + hex(src[i]) + " dest=" + hex(dest[i]) +
+                      " result=" + hex(result) + " expected=" + hex(ref[i]));
+            }
+        }
+    }
+
+    private static void checkSpan() {
+        Random random = new Random(0);
+        int[] src  = new int[1024];
+        int[] dest = new int[1024];
+        int[] ref  = new int[1024];
+        int[] alpha = { 0, 0, 0, 1, 128, 254, 255, 255, 255 };
+
+        for (int mode = BDAlphaBlend.DIVIDE; mode <= BDAlphaBlend.SWAR; mode++) {
+            BDAlphaBlend.setMode(mode);
+            for (int round = 0; round < 1000; round++) {
+                /* runs of transparent, opaque and translucent pixels */
+                int i = 0;
+                while (i < src.length) {
+                    int a = alpha[random.nextInt(alpha.length)];
+                    int run = 1 + random.nextInt(16);
+                    for (; run > 0 && i < src.length; run--, i++) {
+                        int sa = (a == 128) ? random.nextInt(256) : a;
+                        src[i]  = (sa << 24) | (random.nextInt() & 0xffffff);
+                        dest[i] = random.nextInt();
+                        ref[i]  = dest[i];
+                    }
+                }
+
+                int srcOffset = random.nextInt(64);
+                int dstOffset = random.nextInt(64);
+                int length = random.nextInt(src.length - 64);
+                for (int j = 0; j < length; j++) {
+                    ref[dstOffset + j] = BDAlphaBlend.blend(ref[dstOffset + j], src[srcOffset + j]);
+                }
+                BDAlphaBlend.blendSpan(dest, dstOffset, src, srcOffset, length);
+
+                for (int j = 0; j < dest.length; j++) {
+                    if (dest[j] != ref[j]) {
+                        error("blendSpan (mode " + mode + "): index " + j +
+                              " result=" + hex(dest[j]) + " expected=" + hex(ref[j]));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void error(String msg) {
+        if (errors < MAX_ERRORS) {
+            out.println(msg);
+        }
+        errors++;
+    }
+
+    private static String hex(int v) {
+        String s = Integer.toHexString(v);
+        return "00000000".substring(s.length()) + s;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+import java.io.File;
+import java.io.FilePermission;
+import java.io.PrintStream;
+
+/*
+ * Cost of BDJSecurityManager file read check (repeated read of BD file).
+ *
+ * Cache hit: same file is checked again (decision cache).
+ * Cache miss: decision cache is invalidated before each check
+ * (path canonicalization and root checks are done every time).
+ *
+ * checkRead() includes creating FilePermission (as in FileInputStream).
+ * With Java 8 FilePermission canonicalizes the path itself, so
+ * checkPermission() with existing permission is measured separately.
+ *
+ * Run with "ant test".
+ */
+
+public class BDJSecurityManagerBenchmark {
+
+    private static final int ITERATIONS = 200000;
+    private static final int ROUNDS     = 5;
+
+    private static PrintStream out;
+
+    public static void main(String[] args) throws Exception {
+        out = System.out;
+
+        File discDir = createDisc();
+        String discRoot = discDir.getCanonicalPath() + File.separator;
+        final String root = new File(discDir, "cache").getCanonicalPath() + File.separator;
+        final String path = new File(discDir, "BDMV" + File.separator + "JAR" + File.separator + "00000.jar").getPath();
+
+        final BDJSecurityManager sm = new BDJSecurityManager(discRoot, null, null);
+        sm.setCacheRoot(root);
+
+        final FilePermission perm = new FilePermission(path, "read");
+
+        /* BD file read must be granted */
+        sm.checkRead(path);
+
+        long invalidate = measure(new Runnable() {
+                public void run() {
+                    sm.setCacheRoot(root);
+                }
+            });
+
+        long readHit = measure(new Runnable() {
+                public void run() {
+                    sm.checkRead(path);
+                }
+            });
+        long readMiss = measure(new Runnable() {
+                public void run() {
+                    /* invalidates decision cache */
+                    sm.setCacheRoot(root);
+                    sm.checkRead(path);
+                }
+            }) - invalidate;
+        long permHit = measure(new Runnable() {
+                public void run() {
+                    sm.checkPermission(perm);
+                }
+            });
+        long permMiss = measure(new Runnable() {
+                public void run() {
+                    sm.setCacheRoot(root);
+                    sm.checkPermission(perm);
+                }
+            }) - invalidate;
+
+        out.println("checkRead() BD file,       cache hit: " + readHit + " ns, miss: " + readMiss + " ns");
+        out.println("checkPermission() BD file, cache hit: " + permHit + " ns, miss: " + permMiss + " ns");
+
+        System.exit(0);
+    }
+
+    /* best average time of ROUNDS rounds (ns / call) */
+    private static long measure(Runnable r) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS + 1; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                r.run();
+            }
+            long time = (System.nanoTime() - start) / ITERATIONS;
+            /* first round is warm-up */
+            if (round > 0) {
+                best = Math.min(best, time);
+            }
+        }
+        return best;
+    }
+
+    /* disc root with BDMV/JAR/00000.jar */
+    private static File createDisc() throws Exception {
+        File tmp = File.createTempFile("bdj", ".tmp");
+        File discDir = new File(tmp.getParentFile(), tmp.getName() + ".disc");
+        tmp.delete();
+
+        File jarDir = new File(discDir, "BDMV" + File.separator + "JAR");
+        if (!jarDir.mkdirs()) {
+            throw new Exception("Error creating " + jarDir);
+        }
+        File jar = new File(jarDir, "00000.jar");
+        jar.createNewFile();
+
+        /* deleted in reverse order */
+        discDir.deleteOnExit();
+        jarDir.getParentFile().deleteOnExit();
+        jarDir.deleteOnExit();
+        jar.deleteOnExit();
+        return discDir;
+    }
+}
@@ -56,7 +56,7 @@ class Area {
         return y1;
     }
 
-    private void clear() {
+    protected void clear() {
         x0 = Integer.MAX_VALUE;
         y0 = Integer.MAX_VALUE;
         x1 = -1;
@@ -70,15 +70,19 @@ class Area {
         y1 = Math.max(y1, newy);
     }
 
-    public synchronized void add(Rectangle r) {
-        if ((r.x | r.width | r.y | r.height) >= 0) {
-            x0 = Math.min(x0, r.x);
-            x1 = Math.max(x1, r.x + r.width - 1);
-            y0 = Math.min(y0, r.y);
-            y1 = Math.max(y1, r.y + r.height - 1);
+    public synchronized void add(int x, int y, int w, int h) {
+        if ((x | w | y | h) >= 0) {
+            x0 = Math.min(x0, x);
+            x1 = Math.max(x1, x + w - 1);
+            y0 = Math.min(y0, y);
+            y1 = Math.max(y1, y + h - 1);
         }
     }
 
+    public void add(Rectangle r) {
+        add(r.x, r.y, r.width, r.height);
+    }
+
     public synchronized boolean isEmpty() {
         return (x1 < x0) || (y1 < y0);
     }
@@ -0,0 +1,209 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import org.videolan.Logger;
+
+/*
+ * SRC_OVER blending of non-premultiplied ARGB pixels.
+ *
+ * Blending mode can be selected with system property org.videolan.blend:
+ *   DIVIDE - reference implementation (integer division per channel)
+ *   TABLE  - division replaced with reciprocal table lookup
+ *   SWAR   - TABLE + packed R/B and G lanes when destination is opaque (default)
+ *
+ * All modes produce identical results.
+ */
+
+final class BDAlphaBlend {
+
+    static final int DIVIDE = 0;
+    static final int TABLE  = 1;
+    static final int SWAR   = 2;
+
+    private static int mode = SWAR;
+
+    private static final Logger logger = Logger.getLogger(BDAlphaBlend.class.getName());
+
+    /*
+     * RECIP[A] = ceil(2^32 / A) for all possible blend denominators
+     * A = As * 255 + Ad * (255 - As)  (255 ... 65025).
+     * Quotient from (N * RECIP[A]) >>> 32 is at most one too large.
+     */
+    private static final int[] RECIP = new int[255 * 255 + 1];
+
+    static {
+        for (int i = 1; i < RECIP.length; i++) {
+            RECIP[i] = (int)((0x100000000L + i - 1) / i);
+        }
+
+        String prop = System.getProperty("org.videolan.blend");
+        if (prop != null) {
+            if (prop.equalsIgnoreCase("DIVIDE")) {
+                mode = DIVIDE;
+            } else if (prop.equalsIgnoreCase("TABLE")) {
+                mode = TABLE;
+            } else if (prop.equalsIgnoreCase("SWAR")) {
+                mode = SWAR;
+            } else {
+                logger.error("Unknown blending mode " + prop);
+            }
+        }
+    }
+
+    private BDAlphaBlend() {
+    }
+
+    static int getMode() {
+        return mode;
+    }
+
+    static void setMode(int newMode) {
+        if (newMode < DIVIDE || newMode > SWAR) {
+            throw new IllegalArgumentException("Unknown blending mode " + newMode);
+        }
+        mode = newMode;
+    }
+
+    /*
+     * Extra alpha (AlphaComposite.getAlpha()) lookup table.
+     * table[a] == (int)(a * extraAlpha)
+     */
+    static int[] createAlphaTable(float extraAlpha) {
+        int[] table = new int[256];
+        for (int a = 0; a < 256; a++) {
+            table[a] = (int)(a * extraAlpha);
+        }
+        return table;
+    }
+
+    /*
+     * Blend single pixel
+     */
+    static int blend(int dest, int src) {
+        int As = src >>> 24;
+        if (As == 0)
+            return dest;
+        if (As == 255)
+            return src;
+        int Ad = dest >>> 24;
+        if (Ad == 0)
+            return src;
+
+        if (mode == DIVIDE)
+            return blendDivide(dest, src, As, Ad);
+        if (Ad == 255 && mode == SWAR)
+            return blendOpaqueSWAR(dest, src, As);
+        return blendTable(dest, src, As, Ad);
+    }
+
+    /*
+     * Blend span. Fully opaque source runs are copied and fully
+     * transparent source runs are skipped.
+     */
+    static void blendSpan(int[] dst, int dstOffset, int[] src, int srcOffset, int length) {
+        int i = 0;
+        while (i < length) {
+            int s  = src[srcOffset + i];
+            int As = s >>> 24;
+
+            if (As == 0) {
+                i++;
+                continue;
+            }
+
+            if (As == 255) {
+                int start = i;
+                do {
+                    i++;
+                } while (i < length && (src[srcOffset + i] >>> 24) == 255);
+                System.arraycopy(src, srcOffset + start, dst, dstOffset + start, i - start);
+                continue;
+            }
+
+            dst[dstOffset + i] = blend(dst[dstOffset + i], s);
+            i++;
+        }
+    }
+
+    /*
+     * Blending kernels. 0 < As < 255, 0 < Ad.
+     */
+
+    private static int blendDivide(int dest, int src, int As, int Ad) {
+        int R, G, B;
+        R = ((src >>> 16) & 255) * As * 255;
+        G = ((src >>> 8) & 255) * As * 255;
+        B = (src & 255) * As * 255;
+        Ad = Ad * (255 - As);
+        As = As * 255 + Ad;
+        R = (R + ((dest >>> 16) & 255) * Ad) / As;
+        G = (G + ((dest >>> 8) & 255) * Ad) / As;
+        B = (B + (dest & 255) * Ad) / As;
+        R = Math.min(255, R);
+        G = Math.min(255, G);
+        B = Math.min(255, B);
+        Ad = As / 255;
+        Ad = Math.min(255, Ad);
+        return (Ad << 24) | (R << 16) | (G << 8) | B;
+    }
+
+    /* n / d, n <= 255 * d */
+    private static int div(int n, int d, long recip) {
+        int q = (int)((n * recip) >>> 32);
+        if (q * d > n)
+            q--;
+        return q;
+    }
+
+    private static int blendTable(int dest, int src, int As, int Ad) {
+        int  Wd = Ad * (255 - As);
+        int  Ws = As * 255;
+        int  A  = Ws + Wd;
+        long r  = RECIP[A];
+
+        int R = div(((src >>> 16) & 255) * Ws + ((dest >>> 16) & 255) * Wd, A, r);
+        int G = div(((src >>> 8)  & 255) * Ws + ((dest >>> 8)  & 255) * Wd, A, r);
+        int B = div(( src         & 255) * Ws + ( dest         & 255) * Wd, A, r);
+        A = div255(A);
+
+        return (A << 24) | (R << 16) | (G << 8) | B;
+    }
+
+    /*
+     * Opaque destination: result is (src * As + dest * (255 - As)) / 255.
+     * R and B are processed in 16-bit lanes of single int.
+     */
+    private static int blendOpaqueSWAR(int dest, int src, int As) {
+        int Ad = 255 - As;
+        int rb = (src & 0xff00ff) * As + (dest & 0xff00ff) * Ad;
+        int g  = (src & 0x00ff00) * As + (dest & 0x00ff00) * Ad;
+
+        rb = ((rb + ((rb >>> 8) & 0xff00ff) + 0x010001) >>> 8) & 0xff00ff;
+        g  = ((g  + ((g  >>> 8) & 0x00ff00) + 0x000100) >>> 8) & 0x00ff00;
+
+        return 0xff000000 | rb | g;
+    }
+
+    /* exact x / 255 for 0 <= x <= 65535 */
+    private static int div255(int x) {
+        return (x + (x >>> 8) + 1) >>> 8;
+    }
+}
@@ -136,6 +136,10 @@ public class BDFontMetrics extends sun.font.FontDesignMetrics {
         }
         destroyN(BDFontMetrics.ftLib);
         ftLib = 0;
+
+        if (BDGlyphCache.isEnabled()) {
+            logger.info(BDGlyphCache.getStatistics());
+        }
     }
 
     /** A map which maps a native font name and size to a font metrics object. This is used
@@ -219,12 +223,29 @@ public class BDFontMetrics extends sun.font.FontDesignMetrics {
     private int leading = 0;
     private int maxAdvance = 0;
 
-    /** Cache of first 256 Unicode characters as these map to ASCII characters and are often used. */
-    private int[] widths;
+    /*
+     * Character advance cache.
+     * Advances are loaded lazily in blocks of 256 characters.
+     * Blocks are immutable after publishing, so lookups need no locking.
+     */
+    private static final class WidthBlock {
+        WidthBlock(int[] widths) {
+            this.widths = widths;
+        }
+        final int[] widths;
+    }
+
+    private static final int WIDTH_BLOCK_SHIFT = 8;
+    private static final int WIDTH_BLOCK_SIZE  = 1 << WIDTH_BLOCK_SHIFT;
+
+    private final WidthBlock[] widthBlocks = new WidthBlock[65536 / WIDTH_BLOCK_SIZE];
 
     /* synchronize access to ftFace (native functions) */
     private final Object faceLock = new Object();
 
+    /* glyph cache key of this face */
+    private final Object glyphFace = new Object();
+
     /**
      * Creates a font metrics for the supplied font. To get a font metrics for a font
      * use the static method getFontMetrics instead which does caching.
@@ -237,33 +258,80 @@ public class BDFontMetrics extends sun.font.FontDesignMetrics {
             logger.error("Error loading font");
             throw new AWTError("font face:" + nativeName + " not loaded");
         }
-        widths = null;
     }
 
     private native long loadFontN(long ftLib, String fontName, int size);
     private native void destroyFontN(long ftFace);
-    private native int charWidthN(long ftFace, char c);
-    private native int stringWidthN(long ftFace, String string);
-    private native int charsWidthN(long ftFace, char chars[], int offset, int len);
-
-    private void loadWidths() {
-        /* Cache first 256 char widths for use by the getWidths method and for faster metric
-           calculation as they are commonly used (ASCII) characters. */
-        if (widths == null) {
-            int[] widths = new int[256];
+    private native void charWidthsN(long ftFace, char first, int[] widths);
+    private native byte[] renderGlyphN(long ftFace, char c, int[] metrics);
+
+    private int[] loadWidths(int block) {
+        /* Allow only one call at time.
+         * (calling this function from multiple threads caused crashes in freetype)
+         */
+        synchronized (BDFontMetrics.class) {
             synchronized (faceLock) {
-                for (int i = 0; i < 256; i++) {
-                    widths[i] = charWidthN(ftFace, (char)i);
+                WidthBlock wb = widthBlocks[block];
+                if (wb != null) {
+                    return wb.widths;
+                }
+
+                int[] widths = new int[WIDTH_BLOCK_SIZE];
+                if (ftFace == 0) {
+                    /* font destroyed */
+                    return widths;
                 }
+                charWidthsN(ftFace, (char)(block << WIDTH_BLOCK_SHIFT), widths);
+                widthBlocks[block] = new WidthBlock(widths);
+                return widths;
             }
-            this.widths = widths;
         }
     }
 
+    private int[] getWidthBlock(char c) {
+        WidthBlock wb = widthBlocks[c >>> WIDTH_BLOCK_SHIFT];
+        if (wb != null) {
+            return wb.widths;
+        }
+        return loadWidths(c >>> WIDTH_BLOCK_SHIFT);
+    }
+
     protected void drawString(BDGraphics g, String string, int x, int y, int rgb) {
-        synchronized (faceLock) {
-            g.drawStringN(ftFace, string, x, y, rgb);
+        if (!BDGlyphCache.isEnabled()) {
+            synchronized (faceLock) {
+                g.drawStringN(ftFace, string, x, y, rgb);
+            }
+            return;
         }
+
+        int length = string.length();
+        BDGlyphCache.Glyph[] glyphs = new BDGlyphCache.Glyph[length];
+        for (int i = 0; i < length; i++) {
+            glyphs[i] = getGlyph(string.charAt(i));
+            if (glyphs[i] == null) {
+                return;
+            }
+        }
+
+        g.drawGlyphs(glyphs, x, y, rgb);
+    }
+
+    private BDGlyphCache.Glyph getGlyph(char c) {
+        BDGlyphCache.Glyph glyph = BDGlyphCache.get(glyphFace, c);
+        if (glyph == null) {
+            /* left, top, width, height, advance */
+            int[] metrics = new int[5];
+            byte[] mask;
+            synchronized (faceLock) {
+                if (ftFace == 0) {
+                    return null;
+                }
+                mask = renderGlyphN(ftFace, c, metrics);
+            }
+            glyph = BDGlyphCache.put(new BDGlyphCache.Glyph(glyphFace, c, metrics[0], metrics[1],
+                                                            metrics[2], metrics[3], metrics[4], mask));
+        }
+        return glyph;
     }
 
     public int getAscent() {
@@ -282,47 +350,41 @@ public class BDFontMetrics extends sun.font.FontDesignMetrics {
         return maxAdvance;
     }
 
-    /**
-     * Fast lookup of first 256 chars as these are always the same eg. ASCII charset.
-     */
     public int charWidth(char c) {
-        if (c < 256) {
-            loadWidths();
-            return widths[c];
-        }
-        synchronized (faceLock) {
-            return charWidthN(ftFace, c);
-        }
+        return getWidthBlock(c)[c & (WIDTH_BLOCK_SIZE - 1)];
     }
 
     /**
      * Return the width of the specified string in this Font.
      */
     public int stringWidth(String string) {
-        /* Allow only one call at time.
-         * (calling this function from multiple threads caused crashes in freetype)
-         */
-        synchronized (BDFontMetrics.class) {
-            synchronized (faceLock) {
-                return stringWidthN(ftFace, string);
-            }
+        int length = string.length();
+        int width = 0;
+        for (int i = 0; i < length; i++) {
+            width += charWidth(string.charAt(i));
         }
+        return width;
     }
 
     /**
      * Return the width of the specified char[] in this Font.
      */
     public int charsWidth(char chars[], int offset, int length) {
-        synchronized (faceLock) {
-            return charsWidthN(ftFace, chars, offset, length);
+        if (offset < 0 || length < 0 || offset + length > chars.length) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        int width = 0;
+        for (int i = offset; i < offset + length; i++) {
+            width += charWidth(chars[i]);
         }
+        return width;
     }
 
     /**
      * Get the widths of the first 256 characters in the font.
      */
     public int[] getWidths() {
-        loadWidths();
+        int[] widths = getWidthBlock((char)0);
         int[] newWidths = new int[widths.length];
         System.arraycopy(widths, 0, newWidths, 0, widths.length);
         return newWidths;
@@ -330,8 +392,11 @@ public class BDFontMetrics extends sun.font.FontDesignMetrics {
 
     private void destroy() {
         if (ftFace != 0) {
-            destroyFontN(ftFace);
-            ftFace = 0;
+            synchronized (faceLock) {
+                destroyFontN(ftFace);
+                ftFace = 0;
+            }
+            BDGlyphCache.removeFace(glyphFace);
         }
     }
 
@@ -0,0 +1,226 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import org.videolan.Logger;
+
+/*
+ * Cache of rendered glyphs (coverage masks and advances).
+ *
+ * Glyphs are keyed by (face, char). Face key identifies font file and size
+ * (one BDFontMetrics object). Least recently used glyphs are dropped when
+ * cache memory budget is exceeded.
+ *
+ * Memory budget (kilobytes) can be set with system property
+ * org.videolan.glyphcache. 0 disables the cache.
+ */
+
+final class BDGlyphCache {
+
+    /* rendered glyph. Immutable after creation. */
+    static final class Glyph {
+        Glyph(Object face, char c, int left, int top, int width, int height, int advance, byte[] mask) {
+            this.face    = face;
+            this.c       = c;
+            this.left    = left;
+            this.top     = top;
+            this.width   = width;
+            this.height  = height;
+            this.advance = advance;
+            this.mask    = mask;
+        }
+
+        final Object face;
+        final char   c;
+        final int    left;
+        final int    top;
+        final int    width;
+        final int    height;
+        final int    advance;
+        final byte[] mask;    /* width * height coverage values, null if glyph could not be loaded */
+
+        /* protected by cache lock */
+        private Glyph hashNext;
+        private Glyph lruPrev;
+        private Glyph lruNext;
+
+        private int size() {
+            return GLYPH_OVERHEAD + (mask != null ? mask.length : 0);
+        }
+    }
+
+    /* approximate memory used by Glyph object itself */
+    private static final int GLYPH_OVERHEAD = 64;
+
+    private static final int DEFAULT_BUDGET = 512 * 1024;
+    private static final int HASH_SIZE = 1024;
+
+    private static final Logger logger = Logger.getLogger(BDGlyphCache.class.getName());
+
+    private static final int budget;
+
+    static {
+        int kb = DEFAULT_BUDGET / 1024;
+        String prop = System.getProperty("org.videolan.glyphcache");
+        if (prop != null) {
+            try {
+                kb = Integer.parseInt(prop);
+            } catch (NumberFormatException e) {
+                logger.error("Invalid glyph cache size " + prop);
+            }
+        }
+        budget = Math.max(0, kb) * 1024;
+    }
+
+    private static final Glyph[] table = new Glyph[HASH_SIZE];
+
+    /* LRU list. head is most recently used. */
+    private static Glyph lruHead = null;
+    private static Glyph lruTail = null;
+
+    private static int  size = 0;
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long evictions = 0;
+
+    private BDGlyphCache() {
+    }
+
+    static boolean isEnabled() {
+        return budget > 0;
+    }
+
+    private static int hash(Object face, char c) {
+        return (System.identityHashCode(face) * 31 + c) & (HASH_SIZE - 1);
+    }
+
+    /*
+     * Find glyph from cache. Returns null if glyph is not cached.
+     */
+    static synchronized Glyph get(Object face, char c) {
+        for (Glyph g = table[hash(face, c)]; g != null; g = g.hashNext) {
+            if (g.face == face && g.c == c) {
+                hits++;
+                lruRemove(g);
+                lruAddFirst(g);
+                return g;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /*
+     * Add glyph to cache. If the glyph was already added by another thread,
+     * the cached glyph is returned.
+     */
+    static synchronized Glyph put(Glyph glyph) {
+        int h = hash(glyph.face, glyph.c);
+        for (Glyph g = table[h]; g != null; g = g.hashNext) {
+            if (g.face == glyph.face && g.c == glyph.c) {
+                return g;
+            }
+        }
+
+        int glyphSize = glyph.size();
+        if (glyphSize > budget) {
+            return glyph;
+        }
+
+        while (size + glyphSize > budget && lruTail != null) {
+            remove(lruTail);
+            evictions++;
+        }
+
+        glyph.hashNext = table[h];
+        table[h] = glyph;
+        lruAddFirst(glyph);
+        size += glyphSize;
+
+        return glyph;
+    }
+
+    /*
+     * Drop all glyphs of a face (font is being destroyed)
+     */
+    static synchronized void removeFace(Object face) {
+        Glyph g = lruHead;
+        while (g != null) {
+            Glyph next = g.lruNext;
+            if (g.face == face) {
+                remove(g);
+            }
+            g = next;
+        }
+    }
+
+    static synchronized String getStatistics() {
+        return "glyph cache: " + size + "/" + budget + " bytes, " +
+            hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+
+    /*
+     * internal
+     */
+
+    private static void remove(Glyph glyph) {
+        int h = hash(glyph.face, glyph.c);
+        Glyph prev = null;
+        for (Glyph g = table[h]; g != null; prev = g, g = g.hashNext) {
+            if (g == glyph) {
+                if (prev == null) {
+                    table[h] = g.hashNext;
+                } else {
+                    prev.hashNext = g.hashNext;
+                }
+                break;
+            }
+        }
+        glyph.hashNext = null;
+        lruRemove(glyph);
+        size -= glyph.size();
+    }
+
+    private static void lruAddFirst(Glyph g) {
+        g.lruPrev = null;
+        g.lruNext = lruHead;
+        if (lruHead != null) {
+            lruHead.lruPrev = g;
+        } else {
+            lruTail = g;
+        }
+        lruHead = g;
+    }
+
+    private static void lruRemove(Glyph g) {
+        if (g.lruPrev != null) {
+            g.lruPrev.lruNext = g.lruNext;
+        } else {
+            lruHead = g.lruNext;
+        }
+        if (g.lruNext != null) {
+            g.lruNext.lruPrev = g.lruPrev;
+        } else {
+            lruTail = g.lruPrev;
+        }
+        g.lruPrev = null;
+        g.lruNext = null;
+    }
+}
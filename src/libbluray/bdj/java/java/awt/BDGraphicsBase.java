@@ -55,6 +55,10 @@ abstract class BDGraphicsBase extends DVBGraphics implements ConstrainableGraphi
     private BDFontMetrics fontMetrics;
     private AlphaComposite composite;
 
+    /** Extra alpha lookup table for current composite */
+    private int[] compositeTable;
+    private float compositeTableAlpha;
+
     /** The current xor color. If null then we are in paint mode. */
     private Color xorColor;
 
@@ -65,6 +69,12 @@ abstract class BDGraphicsBase extends DVBGraphics implements ConstrainableGraphi
     /** The actual clip rectangle that is intersection of user clip and constrained rectangle. */
     private Rectangle actualClip;
 
+    /** actualClip as primitive bounds, limited to the back buffer (x1 and y1 are exclusive). */
+    private int clipX0;
+    private int clipY0;
+    private int clipX1;
+    private int clipY1;
+
     /** The current user clip rectangle or null if no clip has been set. This is stored in the
      native coordinate system and not the (possibly) translated Java coordinate system. */
     private Rectangle clip = null;
@@ -84,6 +94,8 @@ abstract class BDGraphicsBase extends DVBGraphics implements ConstrainableGraphi
         foreground = g.foreground;
         background = g.background;
         composite = g.composite;
+        compositeTable = g.compositeTable;
+        compositeTableAlpha = g.compositeTableAlpha;
         font = g.font;
         fontMetrics = g.fontMetrics;
         originX = g.originX;
@@ -339,159 +351,205 @@ abstract class BDGraphicsBase extends DVBGraphics implements ConstrainableGraphi
             actualClip = clip.intersection(rect);
         else
             actualClip = rect;
+
+        clipX0 = Math.max(0, actualClip.x);
+        clipY0 = Math.max(0, actualClip.y);
+        clipX1 = Math.min(width,  actualClip.x + actualClip.width);
+        clipY1 = Math.min(height, actualClip.y + actualClip.height);
     }
 
-    private int alphaBlend(int dest, int src) {
-        int As = src >>> 24;
-        if (As == 0)
-            return dest;
-        if (As == 255)
-            return src;
-        int Ad = (dest >>> 24);
-        if (Ad == 0)
-            return src;
-        int R, G, B;
-        R = ((src >>> 16) & 255) * As * 255;
-        G = ((src >>> 8) & 255) * As * 255;
-        B = (src & 255) * As * 255;
-        Ad = Ad * (255 - As);
-        As = As * 255 + Ad;
-        R = (R + ((dest >>> 16) & 255) * Ad) / As;
-        G = (G + ((dest >>> 8) & 255) * Ad) / As;
-        B = (B + (dest & 255) * Ad) / As;
-        R = Math.min(255, R);
-        G = Math.min(255, G);
-        B = Math.min(255, B);
-        Ad = As / 255;
-        Ad = Math.min(255, Ad);
-        return (Ad << 24) | (R << 16) | (G << 8) | B;
+    private int[] getCompositeTable() {
+        float alpha = composite.getAlpha();
+        if (compositeTable == null || compositeTableAlpha != alpha) {
+            compositeTable = BDAlphaBlend.createAlphaTable(alpha);
+            compositeTableAlpha = alpha;
+        }
+        return compositeTable;
     }
 
     private int applyComposite(int rgb) {
-        return ((int)((rgb >>> 24) * composite.getAlpha()) << 24) | (rgb & 0x00FFFFFF);
+        return (getCompositeTable()[rgb >>> 24] << 24) | (rgb & 0x00FFFFFF);
     }
 
-    private void drawSpanN(int x, int y, int length, int rgb) {
-
-        Rectangle rect = new Rectangle(x, y, length, 1);
-        rect = actualClip.intersection(rect);
+    private static int applyComposite(int[] table, int rgb) {
+        return (table[rgb >>> 24] << 24) | (rgb & 0x00FFFFFF);
+    }
 
-        if (rect.width <= 0 || rect.height <= 0 || rect.x < 0 || rect.y < 0 || backBuffer == null) {
-            return;
-        }
+    /*
+     * Span kernels.
+     * Spans must be already clipped; dstOffset is index to backBuffer.
+     * Dirty area is updated by caller.
+     */
 
-        x      = rect.x;
-        length = rect.width;
+    private void fillSpanN(int dstOffset, int length, int rgb) {
+        int[] dst = backBuffer;
+        int   end = dstOffset + length;
 
         if (xorColor != null) {
-            for (int i = 0; i < length; i++) {
-                backBuffer[y * width + x + i] ^= xorColor.getRGB() ^ rgb;
+            rgb ^= xorColor.getRGB();
+            for (int i = dstOffset; i < end; i++) {
+                dst[i] ^= rgb;
             }
-
-            dirty.add(rect);
             return;
         }
 
         switch (composite.getRule()) {
             case AlphaComposite.CLEAR:
-                for (int i = 0; i < length; i++) {
-                    backBuffer[y * width + x + i] = 0;
-                }
+                Arrays.fill(dst, dstOffset, end, 0);
                 break;
             case AlphaComposite.SRC:
-                rgb = applyComposite(rgb);
-                for (int i = 0; i < length; i++) {
-                    backBuffer[y * width + x + i] = rgb;
-                }
+                Arrays.fill(dst, dstOffset, end, applyComposite(rgb));
                 break;
             case AlphaComposite.SRC_OVER:
                 rgb = applyComposite(rgb);
-                for (int i = 0; i < length; i++) {
-                    backBuffer[y * width + x + i] = alphaBlend(backBuffer[y * width + x + i], rgb);
+                if ((rgb >>> 24) == 255) {
+                    Arrays.fill(dst, dstOffset, end, rgb);
+                } else if ((rgb >>> 24) != 0) {
+                    for (int i = dstOffset; i < end; i++) {
+                        dst[i] = BDAlphaBlend.blend(dst[i], rgb);
+                    }
                 }
                 break;
         }
-
-        dirty.add(rect);
     }
 
-    private void drawSpanN(int x, int y, int length, int src[], int srcOffset, boolean flipX) {
-
-        /* avoid overreading source */
-        if (srcOffset + length > src.length) {
-            length -= srcOffset + length - src.length;
-        }
-        /* avoid underreading source */
-        if (srcOffset < 0) {
-            length += srcOffset;
-            x -= srcOffset;
-            srcOffset = 0;
-        }
-        if (length <= 0) {
-            return;
-        }
-
-        Rectangle rect = new Rectangle(x, y, length, 1);
-        rect = actualClip.intersection(rect);
-
-        if (rect.width <= 0 || rect.height <= 0 || rect.x < 0 || rect.y < 0 || backBuffer == null) {
-            return;
-        }
-
-        int dstOffset;
-
-        srcOffset += rect.x - x;
-        x          = rect.x;
-        length     = rect.width;
-        dstOffset  = y * width + x;
+    private void copySpanN(int dstOffset, int length, int src[], int srcOffset, boolean flipX) {
+        int[] dst = backBuffer;
 
         if (xorColor != null) {
-
+            int xor = xorColor.getRGB();
             if (flipX) {
-                for (int i = 0; i < length; i++) {
-                    backBuffer[dstOffset + length -1 - i] ^= xorColor.getRGB() ^ src[srcOffset + i];
+                for (int i = 0, d = dstOffset + length - 1; i < length; i++, d--) {
+                    dst[d] ^= xor ^ src[srcOffset + i];
                 }
             } else {
                 for (int i = 0; i < length; i++) {
-                    backBuffer[dstOffset + i] ^= xorColor.getRGB() ^ src[srcOffset + i];
+                    dst[dstOffset + i] ^= xor ^ src[srcOffset + i];
                 }
             }
-
-            dirty.add(rect);
             return;
         }
 
+        /* extra alpha 1.0 does not change source pixels */
+        int[] table = null;
+        if (composite.getAlpha() < 1.0f) {
+            table = getCompositeTable();
+        }
+
         switch (composite.getRule()) {
             case AlphaComposite.CLEAR:
-                for (int i = 0; i < length; i++) {
-                    backBuffer[dstOffset + i] = 0;
-                }
+                Arrays.fill(dst, dstOffset, dstOffset + length, 0);
                 break;
+
             case AlphaComposite.SRC:
                 if (flipX) {
-                    for (int i = 0; i < length; i++) {
-                        backBuffer[dstOffset + length -1 - i] = applyComposite(src[srcOffset + i]);
+                    if (table == null) {
+                        for (int i = 0, d = dstOffset + length - 1; i < length; i++, d--) {
+                            dst[d] = src[srcOffset + i];
+                        }
+                    } else {
+                        for (int i = 0, d = dstOffset + length - 1; i < length; i++, d--) {
+                            dst[d] = applyComposite(table, src[srcOffset + i]);
+                        }
                     }
                 } else {
-                    for (int i = 0; i < length; i++) {
-                        backBuffer[dstOffset + i] = applyComposite(src[srcOffset + i]);
+                    if (table == null) {
+                        System.arraycopy(src, srcOffset, dst, dstOffset, length);
+                    } else {
+                        for (int i = 0; i < length; i++) {
+                            dst[dstOffset + i] = applyComposite(table, src[srcOffset + i]);
+                        }
                     }
                 }
                 break;
+
             case AlphaComposite.SRC_OVER:
                 if (flipX) {
-                    for (int i = 0; i < length; i++) {
-                        backBuffer[dstOffset + length -1 - i] = alphaBlend(backBuffer[dstOffset + length -1 - i], applyComposite(src[srcOffset + i]));
+                    if (table == null) {
+                        for (int i = 0, d = dstOffset + length - 1; i < length; i++, d--) {
+                            dst[d] = BDAlphaBlend.blend(dst[d], src[srcOffset + i]);
+                        }
+                    } else {
+                        for (int i = 0, d = dstOffset + length - 1; i < length; i++, d--) {
+                            dst[d] = BDAlphaBlend.blend(dst[d], applyComposite(table, src[srcOffset + i]));
+                        }
                     }
                 } else {
-                    for (int i = 0; i < length; i++) {
-                        backBuffer[dstOffset + i] = alphaBlend(backBuffer[dstOffset + i], applyComposite(src[srcOffset + i]));
+                    if (table == null) {
+                        BDAlphaBlend.blendSpan(dst, dstOffset, src, srcOffset, length);
+                    } else {
+                        for (int i = 0; i < length; i++) {
+                            dst[dstOffset + i] = BDAlphaBlend.blend(dst[dstOffset + i], applyComposite(table, src[srcOffset + i]));
+                        }
                     }
                 }
                 break;
         }
+    }
+
+    private void drawSpanN(int x, int y, int length, int rgb) {
+
+        if (y < clipY0 || y >= clipY1 || backBuffer == null) {
+            return;
+        }
+
+        int x1 = x + length;
+        if (x < clipX0) {
+            x = clipX0;
+        }
+        if (x1 > clipX1) {
+            x1 = clipX1;
+        }
+        if (x1 <= x) {
+            return;
+        }
+
+        fillSpanN(y * width + x, x1 - x, rgb);
+
+        dirty.add(x, y, x1 - x, 1);
+    }
+
+    private void drawSpanN(int x, int y, int length, int src[], int srcOffset, boolean flipX) {
+
+        /* avoid overreading source */
+        if (srcOffset + length > src.length) {
+            length -= srcOffset + length - src.length;
+        }
+        /* avoid underreading source */
+        if (srcOffset < 0) {
+            length += srcOffset;
+            x -= srcOffset;
+            srcOffset = 0;
+        }
+        if (length <= 0) {
+            return;
+        }
+
+        if (y < clipY0 || y >= clipY1 || backBuffer == null) {
+            return;
+        }
 
-        dirty.add(rect);
+        int x1 = x + length;
+        if (x < clipX0) {
+            /* clipped pixels are at the end of source span when mirroring */
+            if (!flipX) {
+                srcOffset += clipX0 - x;
+            }
+            x = clipX0;
+        }
+        if (x1 > clipX1) {
+            if (flipX) {
+                srcOffset += x1 - clipX1;
+            }
+            x1 = clipX1;
+        }
+        if (x1 <= x) {
+            return;
+        }
+
+        copySpanN(y * width + x, x1 - x, src, srcOffset, flipX);
+
+        dirty.add(x, y, x1 - x, 1);
     }
 
     private void drawSpan(int x, int y, int length, int rgb) {
@@ -510,50 +568,124 @@ abstract class BDGraphicsBase extends DVBGraphics implements ConstrainableGraphi
         drawSpanN(x, y, 1, rgb);
     }
 
-    private void drawGlyph(int[] rgbArray, int x0, int y0, int w, int h) {
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++)
-                drawPoint(x + x0, y + y0, rgbArray[y * w + x]);
+    /*
+     * Draw string from cached glyphs.
+     * Glyph coverage is multiplied with alpha of rgb.
+     */
+    protected void drawGlyphs(BDGlyphCache.Glyph[] glyphs, int x, int y, int rgb) {
+        if (backBuffer == null) {
+            return;
+        }
+
+        x += originX;
+        y += originY;
+
+        int a = rgb >>> 24;
+        int c = rgb & 0xffffff;
+
+        /* SRC_OVER without XOR mode is handled inline */
+        int[] table = null;
+        if (xorColor == null && composite.getRule() == AlphaComposite.SRC_OVER) {
+            table = getCompositeTable();
+        }
+
+        int dirtyX0 = Integer.MAX_VALUE, dirtyY0 = Integer.MAX_VALUE;
+        int dirtyX1 = Integer.MIN_VALUE, dirtyY1 = Integer.MIN_VALUE;
+
+        for (int i = 0; i < glyphs.length; i++) {
+            BDGlyphCache.Glyph glyph = glyphs[i];
+            byte[] mask = glyph.mask;
+            if (mask == null) {
+                continue;
+            }
+
+            int gx = x + glyph.left;
+            int gy = y - glyph.top;
+            int x0 = Math.max(gx, clipX0);
+            int y0 = Math.max(gy, clipY0);
+            int x1 = Math.min(gx + glyph.width,  clipX1);
+            int y1 = Math.min(gy + glyph.height, clipY1);
+
+            x += glyph.advance;
+
+            if (x0 >= x1 || y0 >= y1) {
+                continue;
+            }
+
+            for (int py = y0; py < y1; py++) {
+                int src = (py - gy) * glyph.width + (x0 - gx);
+                int dst = py * width + x0;
+                int end = dst + (x1 - x0);
+                if (table != null) {
+                    for (; dst < end; dst++, src++) {
+                        int pa = table[a * (mask[src] & 0xff) / 255];
+                        if (pa == 255) {
+                            backBuffer[dst] = 0xff000000 | c;
+                        } else if (pa != 0) {
+                            backBuffer[dst] = BDAlphaBlend.blend(backBuffer[dst], (pa << 24) | c);
+                        }
+                    }
+                } else {
+                    for (; dst < end; dst++, src++) {
+                        fillSpanN(dst, 1, ((a * (mask[src] & 0xff) / 255) << 24) | c);
+                    }
+                }
+            }
+
+            dirtyX0 = Math.min(dirtyX0, x0);
+            dirtyY0 = Math.min(dirtyY0, y0);
+            dirtyX1 = Math.max(dirtyX1, x1);
+            dirtyY1 = Math.max(dirtyY1, y1);
+        }
+
+        if (dirtyX0 < dirtyX1) {
+            dirty.add(dirtyX0, dirtyY0, dirtyX1 - dirtyX0, dirtyY1 - dirtyY0);
+        }
     }
 
     private void drawPoint(int x, int y, int rgb) {
         x += originX;
         y += originY;
-        if (actualClip.contains(x, y))
+        if (x >= clipX0 && x < clipX1 && y >= clipY0 && y < clipY1)
             drawPointN(x, y, rgb);
     }
 
     public void clearRect(int x, int y, int w, int h) {
         x += originX;
         y += originY;
-        Rectangle rect = new Rectangle(x, y, w, h);
-        rect = actualClip.intersection(rect);
-        if (rect.isEmpty() || backBuffer == null) {
+        long x1 = (long)x + w;
+        long y1 = (long)y + h;
+        x = Math.max(x, clipX0);
+        y = Math.max(y, clipY0);
+        w = (int)Math.min(x1, clipX1) - x;
+        h = (int)Math.min(y1, clipY1) - y;
+        if (w <= 0 || h <= 0 || backBuffer == null) {
             return;
         }
-        x = rect.x;
-        y = rect.y;
-        w = rect.width;
-        h = rect.height;
         int rgb = background.getRGB();
         for (int i = 0; i < h; i++)
             Arrays.fill(backBuffer, (y + i) * width + x, (y + i) * width + x + w, rgb);
 
-        dirty.add(rect);
+        dirty.add(x, y, w, h);
     }
 
     public void fillRect(int x, int y, int w, int h) {
         x += originX;
         y += originY;
-        Rectangle rect = new Rectangle(x, y, w, h);
-        rect = actualClip.intersection(rect);
-        x = rect.x;
-        y = rect.y;
-        w = rect.width;
-        h = rect.height;
+        long x1 = (long)x + w;
+        long y1 = (long)y + h;
+        x = Math.max(x, clipX0);
+        y = Math.max(y, clipY0);
+        w = (int)Math.min(x1, clipX1) - x;
+        h = (int)Math.min(y1, clipY1) - y;
+        if (w <= 0 || h <= 0 || backBuffer == null) {
+            return;
+        }
         int rgb = foreground.getRGB();
         for (int Y = y; Y < (y + h); Y++)
-            drawSpanN(x, Y, w, rgb);
+            fillSpanN(Y * width + x, w, rgb);
+
+        dirty.add(x, y, w, h);
     }
 
     public void drawRect(int x, int y, int w, int h) {
@@ -0,0 +1,299 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.videolan.BDJXletContext;
+import org.videolan.Logger;
+
+/*
+ * Cache for Toolkit.getImage().
+ *
+ * Most recently used images are strongly referenced up to memory budget.
+ * Images evicted from LRU list are kept with soft references: as long as
+ * the image is referenced by application, getImage() returns the same object.
+ *
+ * Memory budget (kilobytes) can be set with system property
+ * org.videolan.imagecache.
+ */
+
+class BDImageCache {
+
+    private static final class Entry extends SoftReference {
+        Entry(Object key, BDImageConsumer image, ReferenceQueue queue) {
+            super(image, queue);
+            this.key = key;
+        }
+
+        final Object    key;
+        BDImageConsumer image;   /* strong reference, null if evicted */
+        Object          owner;   /* xlet context charged for the image */
+        int             bytes;   /* accounted size, valid when image != null */
+        Entry           prev;
+        Entry           next;
+    }
+
+    private static final int DEFAULT_BUDGET_KB = 16 * 1024;
+
+    private static final Logger logger = Logger.getLogger(BDImageCache.class.getName());
+
+    private final HashMap map = new HashMap();
+    private final HashMap ownerBytes = new HashMap();
+    private final ReferenceQueue queue = new ReferenceQueue();
+    private final long budget;
+
+    /* LRU list of strongly referenced images. head is most recently used. */
+    private Entry head = null;
+    private Entry tail = null;
+
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    BDImageCache() {
+        int kb = DEFAULT_BUDGET_KB;
+        String prop = System.getProperty("org.videolan.imagecache");
+        if (prop != null) {
+            try {
+                kb = Integer.parseInt(prop);
+            } catch (NumberFormatException e) {
+                logger.error("Invalid image cache size " + prop);
+            }
+        }
+        budget = Math.max(0, kb) * 1024L;
+    }
+
+    /*
+     * Find cached image. Returns null if image is not cached.
+     */
+    synchronized Image get(Object key) {
+        purge();
+
+        Entry e = (Entry)map.get(key);
+        if (e != null) {
+            BDImageConsumer image = (BDImageConsumer)e.get();
+            if (image != null) {
+                hits++;
+                if (e.image == null) {
+                    /* evicted, but still alive */
+                    charge(e, image, BDJXletContext.getCurrentContext());
+                } else {
+                    unlink(e);
+                }
+                linkFirst(e);
+                trim(e);
+                return image;
+            }
+            map.remove(key);
+        }
+
+        misses++;
+        return null;
+    }
+
+    /*
+     * Add new image to cache
+     */
+    synchronized void put(Object key, BDImageConsumer image) {
+        purge();
+
+        Entry old = (Entry)map.remove(key);
+        if (old != null) {
+            drop(old);
+        }
+
+        Entry e = new Entry(key, image, queue);
+        image.cacheKey = key;
+        map.put(key, e);
+        charge(e, image, BDJXletContext.getCurrentContext());
+        linkFirst(e);
+        trim(e);
+    }
+
+    /*
+     * Remove image from cache (image was flushed)
+     */
+    synchronized void remove(BDImageConsumer image) {
+        Object key = image.cacheKey;
+        if (key == null) {
+            return;
+        }
+        Entry e = (Entry)map.get(key);
+        if (e != null && e.get() == image) {
+            map.remove(key);
+            drop(e);
+        }
+    }
+
+    /*
+     * Image size changed (image was decoded or flushed)
+     */
+    synchronized void sizeChanged(BDImageConsumer image) {
+        Object key = image.cacheKey;
+        if (key == null) {
+            return;
+        }
+        Entry e = (Entry)map.get(key);
+        if (e != null && e.image == image) {
+            int size = imageBytes(image);
+            account(e.owner, size - e.bytes);
+            e.bytes = size;
+            trim(e);
+        }
+    }
+
+    /*
+     * Release strong references held on behalf of terminated xlet
+     */
+    synchronized void releaseOwner(Object owner) {
+        Entry e = head;
+        while (e != null) {
+            Entry next = e.next;
+            if (e.owner == owner) {
+                evict(e);
+            }
+            e = next;
+        }
+        ownerBytes.remove(owner);
+    }
+
+    synchronized void clear() {
+        while (head != null) {
+            evict(head);
+        }
+        map.clear();
+        ownerBytes.clear();
+        while (queue.poll() != null) {
+        }
+    }
+
+    synchronized String getStatistics() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("image cache: ").append(map.size()).append(" images, ")
+          .append(bytes).append("/").append(budget).append(" bytes, ")
+          .append(hits).append(" hits, ")
+          .append(misses).append(" misses, ")
+          .append(evictions).append(" evictions");
+
+        Iterator it = ownerBytes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry oe = (Map.Entry)it.next();
+            sb.append("\n  ").append(oe.getKey()).append(": ").append(((long[])oe.getValue())[0]).append(" bytes");
+        }
+        return sb.toString();
+    }
+
+    /*
+     * internal
+     */
+
+    private static int imageBytes(BDImageConsumer image) {
+        int[] buffer = image.backBuffer;
+        return buffer == null ? 0 : buffer.length * 4;
+    }
+
+    /* remove entries of collected images */
+    private void purge() {
+        Entry e;
+        while ((e = (Entry)queue.poll()) != null) {
+            if (map.get(e.key) == e) {
+                map.remove(e.key);
+            }
+        }
+    }
+
+    private void charge(Entry e, BDImageConsumer image, Object owner) {
+        e.image = image;
+        e.owner = owner;
+        e.bytes = imageBytes(image);
+        account(owner, e.bytes);
+    }
+
+    private void account(Object owner, long delta) {
+        bytes += delta;
+        if (owner != null) {
+            long[] ob = (long[])ownerBytes.get(owner);
+            if (ob == null) {
+                ob = new long[1];
+                ownerBytes.put(owner, ob);
+            }
+            ob[0] += delta;
+        }
+    }
+
+    /* move from strongly referenced LRU list to soft references */
+    private void evict(Entry e) {
+        unlink(e);
+        account(e.owner, -e.bytes);
+        e.image = null;
+        e.owner = null;
+        e.bytes = 0;
+    }
+
+    private void drop(Entry e) {
+        if (e.image != null) {
+            evict(e);
+        }
+        e.clear();
+    }
+
+    /* evict least recently used images until cache fits in budget */
+    private void trim(Entry keep) {
+        while (bytes > budget && tail != null && tail != keep) {
+            evict(tail);
+            evictions++;
+        }
+    }
+
+    private void linkFirst(Entry e) {
+        e.prev = null;
+        e.next = head;
+        if (head != null) {
+            head.prev = e;
+        } else {
+            tail = e;
+        }
+        head = e;
+    }
+
+    private void unlink(Entry e) {
+        if (e.image == null) {
+            return;
+        }
+        if (e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            head = e.next;
+        }
+        if (e.next != null) {
+            e.next.prev = e.prev;
+        } else {
+            tail = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+    }
+}
@@ -24,6 +24,10 @@ import java.awt.image.ImageProducer;
 import java.awt.image.ImageObserver;
 import java.awt.image.ImageConsumer;
 import java.awt.image.ColorModel;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+
+import sun.awt.image.ImageFetchable;
 
 class BDImageConsumer extends BDImage implements ImageConsumer {
     private Hashtable properties;
@@ -31,6 +35,16 @@ class BDImageConsumer extends BDImage implements ImageConsumer {
     private int status;
     private boolean started;
 
+    /* file / URL / byte array source decoded in decoder thread (no endless animation) */
+    private boolean directDecode = false;
+
+    /* key in Toolkit image cache */
+    Object cacheKey;
+
+    /* ARGB lookup table of last used IndexColorModel */
+    private IndexColorModel lutModel;
+    private int[] lut;
+
     public BDImageConsumer(ImageProducer producer) {
         super(null, -1, -1, null);
         this.producer = producer;
@@ -39,7 +53,7 @@ class BDImageConsumer extends BDImage implements ImageConsumer {
     public int getWidth(ImageObserver observer) {
         if (width < 0) {
             addObserver(observer);
-            startProduction();
+            startProduction(true);
         }
         return width;
     }
@@ -47,7 +61,7 @@ class BDImageConsumer extends BDImage implements ImageConsumer {
     public int getHeight(ImageObserver observer) {
         if (height < 0) {
             addObserver(observer);
-            startProduction();
+            startProduction(true);
         }
         return height;
     }
@@ -75,7 +89,7 @@ class BDImageConsumer extends BDImage implements ImageConsumer {
                     addObserver(observer);
         } else {
             addObserver(observer);
-            startProduction();
+            startProduction(false);
         }
         return ((status & ImageObserver.ALLBITS) != 0);
     }
@@ -90,6 +104,7 @@ class BDImageConsumer extends BDImage implements ImageConsumer {
         backBuffer = null;
         status = 0;
         started = false;
+        BDImageDecoder.cancel(this);
         producer.removeConsumer(this);
         BDToolkit.clearCache(this);
     }
@@ -124,6 +139,7 @@ class BDImageConsumer extends BDImage implements ImageConsumer {
             this.width = width;
             this.height = height;
             backBuffer = new int[width * height];
+            BDToolkit.imageSizeChanged(this);
             status |= ImageObserver.WIDTH | ImageObserver.HEIGHT;
             notifyObservers(this, ImageObserver.WIDTH | ImageObserver.HEIGHT, 0, 0, width, height);
         }
@@ -153,32 +169,117 @@ class BDImageConsumer extends BDImage implements ImageConsumer {
 
     }
 
-    public void setPixels(int x, int y, int w, int h, ColorModel cm, byte[] pixels, int offset, int scansize) {
-        int X, Y;
-        for (Y = y; Y < (y + h); Y++)
-            for (X = x; X < (x + w); X++)
-                backBuffer[Y * width + X] = cm.getRGB(pixels[offset + (Y - y) * scansize + (X - x)] & 0xFF);
-        dirty.add(new Rectangle(x, y, w, h));
+    private int[] getLut(IndexColorModel cm) {
+        if (lutModel != cm) {
+            int[] rgbs = new int[Math.min(256, cm.getMapSize())];
+            for (int i = 0; i < rgbs.length; i++) {
+                rgbs[i] = cm.getRGB(i);
+            }
+            lut = rgbs;
+            lutModel = cm;
+        }
+        return lut;
+    }
+
+    private static boolean isDefaultARGB(ColorModel cm) {
+        if (cm == ColorModel.getRGBdefault()) {
+            return true;
+        }
+        if (cm instanceof DirectColorModel && cm.getPixelSize() == 32 && !cm.isAlphaPremultiplied()) {
+            DirectColorModel dcm = (DirectColorModel)cm;
+            return dcm.getAlphaMask() == 0xff000000 && dcm.getRedMask()  == 0x00ff0000 &&
+                   dcm.getGreenMask() == 0x0000ff00 && dcm.getBlueMask() == 0x000000ff;
+        }
+        return false;
+    }
+
+    private void pixelsDelivered(int x, int y, int w, int h) {
+        dirty.add(x, y, w, h);
         status |= ImageObserver.SOMEBITS;
         notifyObservers(this, ImageObserver.SOMEBITS, x, y, w, h);
     }
 
+    public void setPixels(int x, int y, int w, int h, ColorModel cm, byte[] pixels, int offset, int scansize) {
+        int X, Y;
+        if (cm instanceof IndexColorModel) {
+            int[] lut = getLut((IndexColorModel)cm);
+            for (Y = 0; Y < h; Y++) {
+                int src = offset + Y * scansize;
+                int dst = (y + Y) * width + x;
+                for (X = 0; X < w; X++) {
+                    int p = pixels[src + X] & 0xFF;
+                    backBuffer[dst + X] = p < lut.length ? lut[p] : cm.getRGB(p);
+                }
+            }
+        } else {
+            for (Y = y; Y < (y + h); Y++)
+                for (X = x; X < (x + w); X++)
+                    backBuffer[Y * width + X] = cm.getRGB(pixels[offset + (Y - y) * scansize + (X - x)] & 0xFF);
+        }
+        pixelsDelivered(x, y, w, h);
+    }
+
     public void setPixels(int x, int y, int w, int h, ColorModel cm, int[] pixels, int offset, int scansize) {
         int X, Y;
-        for (Y = y; Y < (y + h); Y++)
-            for (X = x; X < (x + w); X++)
-                backBuffer[Y * width + X] = cm.getRGB(pixels[offset + (Y - y) * scansize + (X - x)]);
-        dirty.add(new Rectangle(x, y, w, h));
-        status |= ImageObserver.SOMEBITS;
-        notifyObservers(this, ImageObserver.SOMEBITS, x, y, w, h);
+        if (isDefaultARGB(cm)) {
+            for (Y = 0; Y < h; Y++) {
+                System.arraycopy(pixels, offset + Y * scansize, backBuffer, (y + Y) * width + x, w);
+            }
+        } else if (cm instanceof IndexColorModel) {
+            int[] lut = getLut((IndexColorModel)cm);
+            for (Y = 0; Y < h; Y++) {
+                int src = offset + Y * scansize;
+                int dst = (y + Y) * width + x;
+                for (X = 0; X < w; X++) {
+                    int p = pixels[src + X];
+                    backBuffer[dst + X] = (p >= 0 && p < lut.length) ? lut[p] : cm.getRGB(p);
+                }
+            }
+        } else {
+            for (Y = y; Y < (y + h); Y++)
+                for (X = x; X < (x + w); X++)
+                    backBuffer[Y * width + X] = cm.getRGB(pixels[offset + (Y - y) * scansize + (X - x)]);
+        }
+        pixelsDelivered(x, y, w, h);
     }
 
-    protected synchronized void startProduction() {
+    void setDirectDecode(boolean direct) {
+        directDecode = direct;
+    }
+
+    protected synchronized void startProduction(boolean demand) {
         if (producer != null && !started) {
-            if (!producer.isConsumer(this))
-                producer.addConsumer(this);
             started = true;
-            producer.startProduction(this);
+            if (directDecode && producer instanceof ImageFetchable) {
+                BDImageDecoder.decode(this, demand);
+            } else {
+                /* other producers (memory, filtered, Xlet) complete synchronously in caller thread */
+                if (!producer.isConsumer(this))
+                    producer.addConsumer(this);
+                producer.startProduction(this);
+            }
+        }
+    }
+
+    /* called from decoder thread */
+    void produce() {
+        ImageProducer producer;
+        synchronized (this) {
+            producer = this.producer;
+            if (!started || producer == null) {
+                return;
+            }
+        }
+
+        /* register without scheduling JDK image fetcher, and decode in this thread */
+        producer.addConsumer(this);
+        ((ImageFetchable)producer).doFetch();
+    }
+
+    /* queued decoding request was dropped */
+    synchronized void productionCancelled() {
+        if ((status & (ImageObserver.ALLBITS | ImageObserver.ERROR | ImageObserver.ABORT)) == 0) {
+            started = false;
         }
     }
 
@@ -0,0 +1,261 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+import org.videolan.BDJXletContext;
+import org.videolan.Logger;
+
+/*
+ * Image decoding thread pool.
+ *
+ * Requests are served in priority order:
+ *   - images someone is waiting for (getWidth(), getHeight()) before preloads
+ *   - requests from higher priority xlet threads first
+ *   - otherwise in request order
+ *
+ * Number of decoder threads defaults to number of CPUs (max. 8) and can be
+ * set with system property org.videolan.imagedecoders.
+ */
+
+final class BDImageDecoder implements Runnable {
+
+    private static final class Request {
+        Request(BDImageConsumer image, Object owner, boolean demand, int priority, long seq) {
+            this.image    = image;
+            this.owner    = owner;
+            this.demand   = demand;
+            this.priority = priority;
+            this.seq      = seq;
+        }
+
+        /* true if this request should be served before r */
+        boolean before(Request r) {
+            if (demand != r.demand)
+                return demand;
+            if (priority != r.priority)
+                return priority > r.priority;
+            return seq < r.seq;
+        }
+
+        final BDImageConsumer image;
+        final Object owner;
+        boolean demand;
+        int priority;
+        final long seq;
+    }
+
+    private static final int MAX_THREADS = 8;
+    private static final long IDLE_TIMEOUT = 30000;
+
+    private static final Logger logger = Logger.getLogger(BDImageDecoder.class.getName());
+
+    private static final int maxThreads;
+
+    static {
+        int n = Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors());
+        String prop = System.getProperty("org.videolan.imagedecoders");
+        if (prop != null) {
+            try {
+                n = Integer.parseInt(prop);
+            } catch (NumberFormatException e) {
+                logger.error("Invalid number of image decoders " + prop);
+            }
+        }
+        maxThreads = Math.max(1, n);
+    }
+
+    private static final Object lock = new Object();
+    private static final LinkedList queue = new LinkedList();
+    private static int  numThreads = 0;
+    private static int  idleThreads = 0;
+    private static long seq = 0;
+    private static boolean shutdown = false;
+
+    private BDImageDecoder() {
+    }
+
+    /*
+     * Queue image for decoding.
+     * If image is already queued, its priority is raised when needed.
+     */
+    static void decode(BDImageConsumer image, boolean demand) {
+        Object owner = BDJXletContext.getCurrentContext();
+        int priority = Thread.currentThread().getPriority();
+
+        synchronized (lock) {
+            shutdown = false;
+
+            Request r = null;
+            ListIterator it = queue.listIterator();
+            while (it.hasNext()) {
+                Request q = (Request)it.next();
+                if (q.image == image) {
+                    r = q;
+                    it.remove();
+                    break;
+                }
+            }
+
+            if (r == null) {
+                r = new Request(image, owner, demand, priority, seq++);
+            } else {
+                r.demand |= demand;
+                r.priority = Math.max(r.priority, priority);
+            }
+
+            insert(r);
+
+            if (idleThreads > 0) {
+                lock.notify();
+            } else if (numThreads < maxThreads) {
+                startThread();
+            }
+        }
+    }
+
+    /*
+     * Drop queued request (image was flushed)
+     */
+    static boolean cancel(BDImageConsumer image) {
+        synchronized (lock) {
+            Iterator it = queue.iterator();
+            while (it.hasNext()) {
+                Request r = (Request)it.next();
+                if (r.image == image) {
+                    it.remove();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Drop queued requests of terminated xlet
+     */
+    static void cancelAll(Object owner) {
+        LinkedList cancelled = new LinkedList();
+        synchronized (lock) {
+            Iterator it = queue.iterator();
+            while (it.hasNext()) {
+                Request r = (Request)it.next();
+                if (r.owner == owner) {
+                    it.remove();
+                    cancelled.add(r.image);
+                }
+            }
+        }
+
+        Iterator it = cancelled.iterator();
+        while (it.hasNext()) {
+            ((BDImageConsumer)it.next()).productionCancelled();
+        }
+    }
+
+    static void shutdown() {
+        LinkedList cancelled;
+        synchronized (lock) {
+            cancelled = new LinkedList();
+            while (!queue.isEmpty()) {
+                cancelled.add(((Request)queue.removeFirst()).image);
+            }
+            shutdown = true;
+            lock.notifyAll();
+        }
+
+        Iterator it = cancelled.iterator();
+        while (it.hasNext()) {
+            ((BDImageConsumer)it.next()).productionCancelled();
+        }
+    }
+
+    /*
+     * internal
+     */
+
+    private static void insert(Request r) {
+        ListIterator it = queue.listIterator();
+        while (it.hasNext()) {
+            if (r.before((Request)it.next())) {
+                it.previous();
+                break;
+            }
+        }
+        it.add(r);
+    }
+
+    private static void startThread() {
+        /* decoder threads are shared between xlets: do not create them in xlet thread group */
+        Thread t = (Thread)AccessController.doPrivileged(
+            new PrivilegedAction() {
+                public Object run() {
+                    ThreadGroup group = Thread.currentThread().getThreadGroup();
+                    while (group.getParent() != null) {
+                        group = group.getParent();
+                    }
+                    return new Thread(group, new BDImageDecoder(), "BD-J image decoder " + numThreads);
+                }
+            });
+        t.setDaemon(true);
+        numThreads++;
+        t.start();
+    }
+
+    private static BDImageConsumer next() {
+        synchronized (lock) {
+            if (queue.isEmpty() && !shutdown) {
+                idleThreads++;
+                try {
+                    lock.wait(IDLE_TIMEOUT);
+                } catch (InterruptedException e) {
+                }
+                idleThreads--;
+            }
+            if (queue.isEmpty()) {
+                /* idle timeout or shutdown. Exit while holding lock so that no request is left without thread. */
+                numThreads--;
+                return null;
+            }
+            return ((Request)queue.removeFirst()).image;
+        }
+    }
+
+    public void run() {
+        BDImageConsumer image;
+        while ((image = next()) != null) {
+            try {
+                image.produce();
+            } catch (ThreadDeath td) {
+                synchronized (lock) {
+                    numThreads--;
+                }
+                throw td;
+            } catch (Throwable t) {
+                logger.error("Image decoding failed: " + t + "\n" + Logger.dumpStack(t));
+            }
+        }
+    }
+}
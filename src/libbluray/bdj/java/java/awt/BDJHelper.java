@@ -68,6 +68,10 @@ public class BDJHelper {
         }
     }
 
+    public static void releaseImages(org.videolan.BDJXletContext context) {
+        BDToolkit.releaseImages(context);
+    }
+
     public static boolean postMouseEvent(int x, int y) {
         return false;
     }
@@ -20,8 +20,6 @@
 package java.awt;
 
 import java.util.Arrays;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import org.videolan.Logger;
 import org.videolan.Libbluray;
@@ -64,6 +62,7 @@ public class BDRootWindow extends Frame {
                 if ((backBuffer == null) || (getWidth() * getHeight() < width * height)) {
                     backBuffer = new int[width * height];
                     Arrays.fill(backBuffer, 0);
+                    createPresentBuffers(backBuffer.length);
                 }
             }
             super.setBounds(x, y, width, height);
@@ -95,25 +94,21 @@ public class BDRootWindow extends Frame {
             return;
         }
         synchronized (this) {
-            if (timer == null) {
+            if (scheduler == null) {
                 logger.error("notifyChanged(): window already disposed");
                 return;
             }
-            changeCount++;
-            if (timerTask == null) {
-                timerTask = new RefreshTimerTask(this);
-                timer.schedule(timerTask, 40, 40);
-            }
+            scheduler.changed();
         }
     }
 
     public void sync() {
+        PresentBuffer buf;
+
         synchronized (this) {
-            if (timerTask != null) {
-                timerTask.cancel();
-                timerTask = null;
+            if (scheduler != null) {
+                scheduler.presented();
             }
-            changeCount = 0;
 
             if (!isVisible()) {
                 if (overlay_open) {
@@ -124,51 +119,188 @@ public class BDRootWindow extends Frame {
                 return;
             }
 
-            Area a = dirty.getBoundsAndClear();
+            int numRects = dirty.getRectanglesAndClear(dirtyRects);
+            if (numRects <= 0) {
+                return;
+            }
 
-            if (!a.isEmpty()) {
-                if (!overlay_open) {
+            boolean fullUpdate = false;
+            if (!overlay_open) {
 
-                    /* delay opening overlay until something has been drawn */
-                    if (isBackBufferClear()) {
-                        logger.info("sync() ignored (overlay not open, empty overlay)");
-                        return;
-                    }
+                /* delay opening overlay until something has been drawn */
+                if (isBackBufferClear()) {
+                    logger.info("sync() ignored (overlay not open, empty overlay)");
+                    return;
+                }
 
+                synchronized (presentLock) {
                     Libbluray.updateGraphic(getWidth(), getHeight(), null);
-                    overlay_open = true;
-                    a = new Area(getWidth(), getHeight()); /* force full plane update */
                 }
+                overlay_open = true;
+
+                /* force full plane update */
+                fullUpdate = true;
+            }
+
+            if (presentBuffers == null) {
+                if (fullUpdate) {
+                    Libbluray.updateGraphic(getWidth(), getHeight(), backBuffer);
+                } else {
+                    Libbluray.updateGraphic(getWidth(), getHeight(), backBuffer, dirtyRects, numRects);
+                }
+                return;
+            }
 
-                Libbluray.updateGraphic(getWidth(), getHeight(), backBuffer,
-                                        a.getX0(), a.getY0(), a.getX1(), a.getY1());
+            if (fullUpdate) {
+                dirtyRects[0] = 0;
+                dirtyRects[1] = 0;
+                dirtyRects[2] = getWidth() - 1;
+                dirtyRects[3] = getHeight() - 1;
+                numRects = 1;
+            }
+
+            buf = preparePresentBuffer(numRects);
+            if (buf == null) {
+                return;
             }
         }
+
+        /* hand completed plane to native code without holding window lock */
+        present(buf);
     }
 
-    private static class RefreshTimerTask extends TimerTask {
-        public RefreshTimerTask(BDRootWindow window) {
-            this.window = window;
-            this.changeCount = window.changeCount;
+    /*
+     * Multiple buffering.
+     *
+     * Xlets always draw to backBuffer. sync() copies damaged areas to a free
+     * present buffer while holding window lock, and native code reads the
+     * present buffer after window lock has been released.
+     * Each present buffer tracks areas that have changed since it was last
+     * updated, so only those areas are copied when it is taken into use again.
+     */
+
+    private static final class PresentBuffer {
+        PresentBuffer(int size) {
+            pixels = new int[size];
+        }
+
+        final int[] pixels;
+        final DirtyRegion damage = new DirtyRegion(MAX_DIRTY_RECTS);
+        final int[] rects = new int[MAX_DIRTY_RECTS * 4];
+        int numRects;
+        int ticket;
+        int generation;
+        int width;
+        int height;
+        boolean busy;
+    }
+
+    private void createPresentBuffers(int size) {
+        presentBuffers = null;
+        if (numBuffers > 1) {
+            PresentBuffer[] buffers = new PresentBuffer[numBuffers - 1];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new PresentBuffer(size);
+            }
+            presentBuffers = buffers;
+        }
+    }
+
+    /* called with window lock held. Update rectangles are in dirtyRects. */
+    private PresentBuffer preparePresentBuffer(int numRects) {
+        PresentBuffer buf = null;
+        for (int i = 0; i < presentBuffers.length; i++) {
+            if (!presentBuffers[i].busy) {
+                buf = presentBuffers[i];
+                break;
+            }
+        }
+
+        if (buf == null) {
+            /* all buffers are still owned by native code. Retry when one is released. */
+            for (int i = 0; i < numRects * 4; i += 4) {
+                dirty.add(dirtyRects[i], dirtyRects[i + 1],
+                          dirtyRects[i + 2] - dirtyRects[i] + 1, dirtyRects[i + 3] - dirtyRects[i + 1] + 1);
+            }
+            presentPending = true;
+            return null;
+        }
+
+        /* carry damage to all present buffers */
+        for (int b = 0; b < presentBuffers.length; b++) {
+            DirtyRegion damage = presentBuffers[b].damage;
+            for (int i = 0; i < numRects * 4; i += 4) {
+                damage.add(dirtyRects[i], dirtyRects[i + 1],
+                           dirtyRects[i + 2] - dirtyRects[i] + 1, dirtyRects[i + 3] - dirtyRects[i + 1] + 1);
+            }
         }
 
-        public void run() {
-            synchronized (window) {
-                if (this.changeCount == window.changeCount)
-                    window.sync();
-                else
-                    this.changeCount = window.changeCount;
+        /* bring buffer up to date */
+        int width = getWidth();
+        int n = buf.damage.getRectanglesAndClear(buf.rects);
+        for (int i = 0; i < n * 4; i += 4) {
+            int w = buf.rects[i + 2] - buf.rects[i] + 1;
+            for (int y = buf.rects[i + 1]; y <= buf.rects[i + 3]; y++) {
+                int offset = y * width + buf.rects[i];
+                System.arraycopy(backBuffer, offset, buf.pixels, offset, w);
             }
         }
 
-        private BDRootWindow window;
-        private int changeCount;
+        /* only areas changed since previous sync() are sent to native code */
+        System.arraycopy(dirtyRects, 0, buf.rects, 0, numRects * 4);
+        buf.numRects = numRects;
+        buf.width = width;
+        buf.height = getHeight();
+        buf.busy = true;
+        buf.ticket = nextTicket++;
+        synchronized (presentLock) {
+            buf.generation = presentGeneration;
+        }
+
+        return buf;
+    }
+
+    /* called without window lock. Buffers are presented in the order they were prepared. */
+    private void present(PresentBuffer buf) {
+        try {
+            synchronized (presentLock) {
+                try {
+                    while (buf.ticket != nextPresent) {
+                        try {
+                            presentLock.wait();
+                        } catch (InterruptedException e) {
+                        }
+                    }
+
+                    /* skip if overlay has been closed after buffer was prepared */
+                    if (buf.generation == presentGeneration) {
+                        Libbluray.updateGraphic(buf.width, buf.height, buf.pixels, buf.rects, buf.numRects);
+                    }
+                } finally {
+                    nextPresent++;
+                    presentLock.notifyAll();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                buf.busy = false;
+                if (presentPending) {
+                    presentPending = false;
+                    if (scheduler != null) {
+                        scheduler.changed();
+                    }
+                }
+            }
+        }
     }
 
     private void close() {
         synchronized (this) {
             if (overlay_open) {
-                Libbluray.updateGraphic(0, 0, null);
+                synchronized (presentLock) {
+                    presentGeneration++;
+                    Libbluray.updateGraphic(0, 0, null);
+                }
                 overlay_open = false;
             }
         }
@@ -198,13 +330,9 @@ public class BDRootWindow extends Frame {
     public void dispose()
     {
         synchronized (this) {
-            if (timerTask != null) {
-                timerTask.cancel();
-                timerTask = null;
-            }
-            if (timer != null) {
-                timer.cancel();
-                timer = null;
+            if (scheduler != null) {
+                scheduler.shutdown();
+                scheduler = null;
             }
         }
 
@@ -217,17 +345,49 @@ public class BDRootWindow extends Frame {
         super.dispose();
 
         backBuffer = null;
+        presentBuffers = null;
     }
 
     private int[] backBuffer = null;
-    private transient Area dirty = new Area();
-    private transient int changeCount = 0;
-    private transient Timer timer = new Timer();
-    private transient TimerTask timerTask = null;
+    private transient DirtyRegion dirty = new DirtyRegion(MAX_DIRTY_RECTS);
+    private transient int[] dirtyRects = new int[MAX_DIRTY_RECTS * 4];
+    private transient FrameScheduler scheduler = new FrameScheduler(this);
     private boolean overlay_open = false;
+    private transient PresentBuffer[] presentBuffers = null;
+    private transient boolean presentPending = false;
+    private transient int nextTicket = 0;
+    private final transient Object presentLock = new Object();
+    private transient int nextPresent = 0;    /* protected by presentLock */
+    private transient int presentGeneration = 0; /* protected by presentLock */
     private Font defaultFont = null;
 
+    /* max. number of separate rectangles updated to overlay in single sync() */
+    private static final int MAX_DIRTY_RECTS = 8;
+
     private static final Logger logger = Logger.getLogger(BDRootWindow.class.getName());
 
+    /*
+     * number of overlay planes (1 ... 3).
+     * Can be selected with system property org.videolan.osdbuffers.
+     */
+    private static final int numBuffers;
+
+    static {
+        int n = 1;
+        String prop = System.getProperty("org.videolan.osdbuffers");
+        if (prop != null) {
+            try {
+                n = Integer.parseInt(prop);
+            } catch (NumberFormatException e) {
+                n = -1;
+            }
+            if (n < 1 || n > 3) {
+                logger.error("Invalid number of OSD buffers " + prop);
+                n = 1;
+            }
+        }
+        numBuffers = n;
+    }
+
     private static final long serialVersionUID = -8325961861529007953L;
 }
@@ -24,12 +24,12 @@ import java.awt.image.ColorModel;
 import java.awt.image.ImageObserver;
 import java.awt.image.ImageProducer;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.Collections;
-import java.util.Hashtable;
 import java.util.WeakHashMap;
 import java.util.Map;
-import java.util.Iterator;
 
 import sun.awt.image.ByteArrayImageSource;
 import sun.awt.image.FileImageSource;
@@ -42,7 +42,7 @@ abstract class BDToolkitBase extends Toolkit {
     private EventQueue eventQueue = new EventQueue();
     private BDGraphicsEnvironment localEnv = new BDGraphicsEnvironment();
     private BDGraphicsConfiguration defaultGC = (BDGraphicsConfiguration)localEnv.getDefaultScreenDevice().getDefaultConfiguration();
-    private static Hashtable cachedImages = new Hashtable();
+    private static final BDImageCache cachedImages = new BDImageCache();
     private static final Logger logger = Logger.getLogger(BDToolkit.class.getName());
 
     // mapping of Components to AppContexts, WeakHashMap<Component,AppContext>
@@ -73,8 +73,10 @@ abstract class BDToolkitBase extends Toolkit {
             eventQueue = null;
         }
         */
+        logger.info(cachedImages.getStatistics());
         cachedImages.clear();
         contextMap.clear();
+        BDImageDecoder.shutdown();
     }
 
     public Dimension getScreenSize() {
@@ -110,15 +112,68 @@ abstract class BDToolkitBase extends Toolkit {
         return BDFontMetrics.getFontMetrics(font);
     }
 
-    static void clearCache(BDImage image) {
-        synchronized (cachedImages) {
-            Iterator i = cachedImages.entrySet().iterator();
-            while (i.hasNext()) {
-                Map.Entry entry = (Map.Entry) i.next();
-                if (entry.getValue() == image) {
-                    i.remove();
-                    return;
-                }
+    static void clearCache(BDImageConsumer image) {
+        cachedImages.remove(image);
+    }
+
+    static void imageSizeChanged(BDImageConsumer image) {
+        cachedImages.sizeChanged(image);
+    }
+
+    /* release cached images charged to terminated xlet */
+    static void releaseImages(BDJXletContext context) {
+        BDImageDecoder.cancelAll(context);
+        cachedImages.releaseOwner(context);
+    }
+
+    /*
+     * GIF animations may never complete and can not be decoded in shared decoder thread.
+     * File name extension is not reliable: check file header.
+     */
+    private static boolean isGif(byte[] data, int offset, int length) {
+        return length >= 4 && data[offset] == 'G' && data[offset + 1] == 'I' &&
+            data[offset + 2] == 'F' && data[offset + 3] == '8';
+    }
+
+    private static boolean isGif(String filename) {
+        if (filename.toLowerCase().endsWith(".gif"))
+            return true;
+        try {
+            return isGif(new FileInputStream(filename));
+        } catch (Exception e) {
+            /* decoding will fail too */
+            return false;
+        }
+    }
+
+    private static boolean isGif(URL url) {
+        if (url.getPath().toLowerCase().endsWith(".gif"))
+            return true;
+        try {
+            return isGif(url.openStream());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /* check header and close stream */
+    private static boolean isGif(InputStream is) {
+        try {
+            byte[] header = new byte[4];
+            int length = 0;
+            while (length < header.length) {
+                int n = is.read(header, length, header.length - length);
+                if (n < 0)
+                    break;
+                length += n;
+            }
+            return isGif(header, 0, length);
+        } catch (Exception e) {
+            return false;
+        } finally {
+            try {
+                is.close();
+            } catch (Exception e) {
             }
         }
     }
@@ -128,11 +183,12 @@ abstract class BDToolkitBase extends Toolkit {
             logger.error("getImage(): no context " + Logger.dumpStack());
         }
 
-        if (cachedImages.containsKey(filename))
-            return (Image)cachedImages.get(filename);
+        Image image = cachedImages.get(filename);
+        if (image != null)
+            return image;
         Image newImage = createImage(filename);
-        if (newImage != null)
-            cachedImages.put(filename, newImage);
+        if (newImage instanceof BDImageConsumer)
+            cachedImages.put(filename, (BDImageConsumer)newImage);
         return newImage;
     }
 
@@ -141,11 +197,12 @@ abstract class BDToolkitBase extends Toolkit {
             logger.error("getImage(): no context " + Logger.dumpStack());
         }
 
-        if (cachedImages.containsKey(url))
-            return (Image)cachedImages.get(url);
+        Image image = cachedImages.get(url);
+        if (image != null)
+            return image;
         Image newImage = createImage(url);
-        if (newImage != null)
-            cachedImages.put(url, newImage);
+        if (newImage instanceof BDImageConsumer)
+            cachedImages.put(url, (BDImageConsumer)newImage);
         return newImage;
     }
 
@@ -168,7 +225,8 @@ abstract class BDToolkitBase extends Toolkit {
         }
 
         ImageProducer ip = new FileImageSource(filename);
-        Image newImage = createImage(ip);
+        BDImageConsumer newImage = (BDImageConsumer)createImage(ip);
+        newImage.setDirectDecode(!isGif(filename));
         return newImage;
     }
 
@@ -177,7 +235,8 @@ abstract class BDToolkitBase extends Toolkit {
             logger.error("createImage(): no context " + Logger.dumpStack());
         }
         ImageProducer ip = new URLImageSource(url);
-        Image newImage = createImage(ip);
+        BDImageConsumer newImage = (BDImageConsumer)createImage(ip);
+        newImage.setDirectDecode(!isGif(url));
         return newImage;
     }
 
@@ -190,7 +249,8 @@ abstract class BDToolkitBase extends Toolkit {
         }
 
         ImageProducer ip = new ByteArrayImageSource(imagedata, imageoffset, imagelength);
-        Image newImage = createImage(ip);
+        BDImageConsumer newImage = (BDImageConsumer)createImage(ip);
+        newImage.setDirectDecode(!isGif(imagedata, imageoffset, imagelength));
         return newImage;
     }
 
@@ -158,6 +158,14 @@ public class BDWindowGraphics extends BDGraphics {
         }
     }
 
+    protected void drawGlyphs(BDGlyphCache.Glyph[] glyphs, int x, int y, int rgb) {
+        if (window == null) return;
+        synchronized (window) {
+            super.drawGlyphs(glyphs, x, y, rgb);
+            window.notifyChanged();
+        }
+    }
+
     public void dispose() {
         super.dispose();
         window = null;
@@ -0,0 +1,153 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+/*
+ * Dirty area as a bounded list of disjoint rectangles.
+ *
+ * Overlapping rectangles are always merged. Non-overlapping rectangles
+ * are merged when the union does not add too many clean pixels, or when
+ * the list is full (the pair that adds the least clean pixels is merged).
+ */
+
+class DirtyRegion extends Area {
+
+    /* max. number of clean pixels added by merging two rectangles */
+    private static final int MERGE_SLACK = 64 * 64;
+
+    private final int maxRects;
+
+    /* rectangles as (x0, y0, x1, y1), inclusive */
+    private final int[] rects;
+    private int count;
+
+    public DirtyRegion(int maxRects) {
+        super();
+        this.maxRects = Math.max(1, maxRects);
+        this.rects = new int[this.maxRects * 4];
+    }
+
+    public int getMaxRectangles() {
+        return maxRects;
+    }
+
+    public synchronized int getRectangleCount() {
+        return count;
+    }
+
+    protected void clear() {
+        super.clear();
+        count = 0;
+    }
+
+    public synchronized void add(int newx, int newy) {
+        super.add(newx, newy);
+        addRect(newx, newy, newx, newy);
+    }
+
+    public synchronized void add(int x, int y, int w, int h) {
+        if ((x | w | y | h) >= 0 && w > 0 && h > 0) {
+            super.add(x, y, w, h);
+            addRect(x, y, x + w - 1, y + h - 1);
+        }
+    }
+
+    /*
+     * Copy rectangles to rectArray as (x0, y0, x1, y1) and clear region.
+     * rectArray must have space for getMaxRectangles() rectangles.
+     * Returns number of rectangles.
+     */
+    public synchronized int getRectanglesAndClear(int[] rectArray) {
+        int n = count;
+        System.arraycopy(rects, 0, rectArray, 0, n * 4);
+        clear();
+        return n;
+    }
+
+    private static long area(int x0, int y0, int x1, int y1) {
+        return (long)(x1 - x0 + 1) * (y1 - y0 + 1);
+    }
+
+    /* number of clean pixels added when merging rectangle i and (x0, y0, x1, y1) */
+    private long mergeCost(int i, int x0, int y0, int x1, int y1) {
+        int rx0 = rects[i], ry0 = rects[i + 1], rx1 = rects[i + 2], ry1 = rects[i + 3];
+        long union = area(Math.min(rx0, x0), Math.min(ry0, y0), Math.max(rx1, x1), Math.max(ry1, y1));
+        return union - area(rx0, ry0, rx1, ry1) - area(x0, y0, x1, y1);
+    }
+
+    private boolean intersects(int i, int x0, int y0, int x1, int y1) {
+        return rects[i] <= x1 && x0 <= rects[i + 2] && rects[i + 1] <= y1 && y0 <= rects[i + 3];
+    }
+
+    private void remove(int i) {
+        count--;
+        System.arraycopy(rects, count * 4, rects, i, 4);
+    }
+
+    private void addRect(int x0, int y0, int x1, int y1) {
+        boolean merged;
+        do {
+            merged = false;
+            for (int i = 0; i < count * 4; i += 4) {
+
+                /* already covered ? */
+                if (rects[i] <= x0 && rects[i + 1] <= y0 && rects[i + 2] >= x1 && rects[i + 3] >= y1) {
+                    return;
+                }
+
+                if (intersects(i, x0, y0, x1, y1) || mergeCost(i, x0, y0, x1, y1) <= MERGE_SLACK) {
+                    x0 = Math.min(x0, rects[i]);
+                    y0 = Math.min(y0, rects[i + 1]);
+                    x1 = Math.max(x1, rects[i + 2]);
+                    y1 = Math.max(y1, rects[i + 3]);
+                    remove(i);
+                    merged = true;
+                    break;
+                }
+            }
+
+            /* list full: merge with the cheapest rectangle */
+            if (!merged && count >= maxRects) {
+                int  best     = 0;
+                long bestCost = Long.MAX_VALUE;
+                for (int i = 0; i < count * 4; i += 4) {
+                    long cost = mergeCost(i, x0, y0, x1, y1);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        best = i;
+                    }
+                }
+                x0 = Math.min(x0, rects[best]);
+                y0 = Math.min(y0, rects[best + 1]);
+                x1 = Math.max(x1, rects[best + 2]);
+                y1 = Math.max(y1, rects[best + 3]);
+                remove(best);
+                merged = true;
+            }
+        } while (merged);
+
+        int i = count * 4;
+        rects[i]     = x0;
+        rects[i + 1] = y0;
+        rects[i + 2] = x1;
+        rects[i + 3] = y1;
+        count++;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package java.awt;
+
+import org.videolan.Logger;
+import org.videolan.VideoFrameClock;
+
+/*
+ * Schedules root window overlay updates to video frame boundaries.
+ *
+ * Changes are flushed at the next frame boundary. If drawing is still
+ * in progress at the frame boundary, flush is postponed to the next frame
+ * (at most MAX_SKIP times) to avoid showing half-drawn screens.
+ *
+ * When video frame rate is not known (or video sync is disabled with
+ * org.videolan.vsync=NO), 40 ms frame duration is used.
+ */
+
+class FrameScheduler implements Runnable {
+
+    private static final int MAX_SKIP = 2;
+
+    FrameScheduler(BDRootWindow window) {
+        this.window = window;
+
+        String prop = System.getProperty("org.videolan.vsync");
+        useVideoClock = (prop == null || !prop.equalsIgnoreCase("NO"));
+
+        Thread thread = new Thread(this, "BDRootWindow frame scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /* window content changed */
+    synchronized void changed() {
+        long now = System.nanoTime();
+        lastChange = now;
+        if (deadline == 0) {
+            firstChange = now;
+            skip = 0;
+            deadline = nextFrame(now);
+            notifyAll();
+        }
+    }
+
+    /* window content was flushed */
+    synchronized void presented() {
+        if (deadline != 0 && !flushing) {
+            presentedNow++;
+        }
+        deadline = 0;
+    }
+
+    synchronized void shutdown() {
+        shutdown = true;
+        deadline = 0;
+        notifyAll();
+
+        logger.info("flushed " + framesFlushed + " frames, " +
+                    "presented immediately " + presentedNow + ", " +
+                    "skipped " + framesSkipped + " frames, " +
+                    "average latency " + getAverageLatency() / 1000 + " us, " +
+                    "max. latency " + maxLatency / 1000 + " us");
+    }
+
+    /*
+     * Statistics
+     */
+
+    synchronized long getFramesFlushed() {
+        return framesFlushed;
+    }
+
+    synchronized long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    synchronized long getPresentedNow() {
+        return presentedNow;
+    }
+
+    /* average latency from first change to flush (ns) */
+    synchronized long getAverageLatency() {
+        if (framesFlushed == 0)
+            return 0;
+        return totalLatency / framesFlushed;
+    }
+
+    synchronized long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /*
+     *
+     */
+
+    private long getFrameDuration() {
+        if (useVideoClock)
+            return VideoFrameClock.getInstance().getFrameDuration();
+        return VideoFrameClock.DEFAULT_FRAME_DURATION;
+    }
+
+    private long nextFrame(long time) {
+        if (useVideoClock)
+            return VideoFrameClock.getInstance().nextFrame(time);
+        return time + VideoFrameClock.DEFAULT_FRAME_DURATION;
+    }
+
+    public void run() {
+        while (true) {
+            long latency;
+
+            synchronized (this) {
+                if (shutdown) {
+                    return;
+                }
+                if (deadline == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                    }
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                if (now < deadline) {
+                    long ns = deadline - now;
+                    try {
+                        wait(ns / 1000000, (int)(ns % 1000000));
+                    } catch (InterruptedException e) {
+                    }
+                    continue;
+                }
+
+                /* still drawing ? */
+                if (skip < MAX_SKIP && lastChange > deadline - getFrameDuration() / 4) {
+                    skip++;
+                    framesSkipped++;
+                    deadline = nextFrame(now);
+                    continue;
+                }
+
+                latency = now - firstChange;
+                flushing = true;
+            }
+
+            try {
+                window.sync();
+            } catch (Throwable t) {
+                logger.error("sync() failed: " + t + "\n" + Logger.dumpStack(t));
+            }
+
+            synchronized (this) {
+                flushing = false;
+                framesFlushed++;
+                totalLatency += latency;
+                if (latency > maxLatency) {
+                    maxLatency = latency;
+                }
+            }
+        }
+    }
+
+    private final BDRootWindow window;
+    private final boolean useVideoClock;
+
+    private boolean shutdown = false;
+    private boolean flushing = false;
+    private long deadline = 0;
+    private long firstChange = 0;
+    private long lastChange = 0;
+    private int  skip = 0;
+
+    private long framesFlushed = 0;
+    private long framesSkipped = 0;
+    private long presentedNow = 0;
+    private long totalLatency = 0;
+    private long maxLatency = 0;
+
+    private static final Logger logger = Logger.getLogger(FrameScheduler.class.getName());
+}
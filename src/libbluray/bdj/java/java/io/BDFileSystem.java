@@ -36,6 +36,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 
 import org.videolan.BDJLoader;
+import org.videolan.MountManager;
 import org.videolan.BDJXletContext;
 import org.videolan.Logger;
 
@@ -183,13 +184,15 @@ public abstract class BDFileSystem extends FileSystem {
             parent = getHomeDir();
         }
         else if (!isAbsolutePath(parent)) {
-            logger.info("resolve relative file at " + parent);
+            if (logger.isEnabled(Logger.INFO)) {
+                logger.info("resolve relative file at " + parent);
+            }
             parent = getHomeDir() + parent;
         }
 
         String resolvedPath = fs.resolve(parent, child);
         String cachePath = BDJLoader.getCachedFile(resolvedPath);
-        if (cachePath != resolvedPath) {
+        if (cachePath != resolvedPath && logger.isEnabled(Logger.INFO)) {
             logger.info("resolve(p,c): using cached " + cachePath + " (" + resolvedPath + ")");
         }
         return cachePath;
@@ -212,13 +215,15 @@ public abstract class BDFileSystem extends FileSystem {
             return fs.resolve(f);
 
         if (!f.isAbsolute()) {
-            logger.info("resolve relative file " + f.getPath());
+            if (logger.isEnabled(Logger.INFO)) {
+                logger.info("resolve relative file " + f.getPath());
+            }
             return resolve(BDJXletContext.getCurrentXletHome(), f.getPath());
         }
 
         String resolvedPath = fs.resolve(f);
         String cachePath = BDJLoader.getCachedFile(resolvedPath);
-        if (cachePath != resolvedPath) {
+        if (cachePath != resolvedPath && logger.isEnabled(Logger.INFO)) {
             logger.info("resolve(f): using cached " + cachePath + " (" + resolvedPath + ")");
         }
         return cachePath;
@@ -230,7 +235,7 @@ public abstract class BDFileSystem extends FileSystem {
 
         String canonPath = fs.canonicalize(path);
         String cachePath = BDJLoader.getCachedFile(canonPath);
-        if (cachePath != canonPath) {
+        if (cachePath != canonPath && logger.isEnabled(Logger.INFO)) {
             logger.info("canonicalize(): Using cached " + cachePath + " for " + canonPath + "(" + path + ")");
         }
         return cachePath;
@@ -241,6 +246,7 @@ public abstract class BDFileSystem extends FileSystem {
             return fs.getBooleanAttributes(f);
 
         if (f.isAbsolute()) {
+            MountManager.accessFile(f.getPath());
             return fs.getBooleanAttributes(f);
         }
 
@@ -252,7 +258,10 @@ public abstract class BDFileSystem extends FileSystem {
         }
 
         String path = home + f.getPath();
-        logger.info("Relative path " + f.getPath() + " translated to " + path);
+        if (logger.isEnabled(Logger.INFO)) {
+            logger.info("Relative path " + f.getPath() + " translated to " + path);
+        }
+        MountManager.accessFile(path);
         return fs.getBooleanAttributes(new File(path));
     }
 
@@ -270,6 +279,7 @@ public abstract class BDFileSystem extends FileSystem {
             return fs.getLength(f);
 
         if (f.isAbsolute()) {
+            MountManager.accessFile(f.getPath());
             return fs.getLength(f);
         }
 
@@ -281,7 +291,10 @@ public abstract class BDFileSystem extends FileSystem {
         }
 
         String path = home + f.getPath();
-        logger.info("Relative path " + f.getPath() + " translated to " + path);
+        if (logger.isEnabled(Logger.INFO)) {
+            logger.info("Relative path " + f.getPath() + " translated to " + path);
+        }
+        MountManager.accessFile(path);
         return fs.getLength(new File(path));
     }
 
@@ -355,6 +368,13 @@ public abstract class BDFileSystem extends FileSystem {
             return fs.list(f);
 
         String path = f.getPath();
+
+        /* lazily mounted JAR */
+        String[] files = MountManager.list(path);
+        if (files != null) {
+            return files;
+        }
+
         String root = System.getProperty("bluray.vfs.root");
         if (root == null || !path.startsWith(root)) {
             /* not inside VFS */
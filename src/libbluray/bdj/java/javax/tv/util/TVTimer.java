@@ -19,13 +19,10 @@
 
 package javax.tv.util;
 
-import org.videolan.Logger;
-
 public abstract class TVTimer
 {
     public static TVTimer getTimer() {
-        Logger.unimplemented(TVTimer.class.getName(), "getTimer");
-        return null;
+        return TVTimerImpl.getInstance();
     }
 
     public abstract TVTimerSpec scheduleTimerSpec(TVTimerSpec paramTVTimerSpec)
@@ -0,0 +1,448 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package javax.tv.util;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.videolan.BDJXletContext;
+import org.videolan.Logger;
+
+/*
+ * TVTimer implementation.
+ *
+ * All timers are kept in one hierarchical timing wheel served by a single thread.
+ * Scheduling and cancelling a timer is O(1).
+ * Timer events are delivered to listeners in their Xlet callback queue.
+ */
+
+public class TVTimerImpl extends TVTimer {
+
+    private static final Object instanceLock = new Object();
+    private static TVTimerImpl instance = null;
+
+    public static TVTimer getInstance() {
+        synchronized (instanceLock) {
+            if (instance == null)
+                instance = new TVTimerImpl();
+            return instance;
+        }
+    }
+
+    /* called from BDJXletContext when Xlet is terminated */
+    public static void cancelAll(BDJXletContext ctx) {
+        BDJXletContext current = BDJXletContext.getCurrentContext();
+        if (current != null && current != ctx) {
+            logger.error("cancelAll() called from another Xlet:\n" + Logger.dumpStack());
+            return;
+        }
+
+        TVTimerImpl timer;
+        synchronized (instanceLock) {
+            timer = instance;
+        }
+        if (timer != null) {
+            timer.cancelContext(ctx);
+        }
+    }
+
+    /* called from Libbluray.shutdown() */
+    public static void shutdown() {
+        if (BDJXletContext.getCurrentContext() != null) {
+            logger.error("shutdown() called from Xlet code:\n" + Logger.dumpStack());
+            return;
+        }
+
+        TVTimerImpl timer;
+        synchronized (instanceLock) {
+            timer = instance;
+            instance = null;
+        }
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    private TVTimerImpl() {
+        baseTime = System.currentTimeMillis();
+        for (int i = 0; i < LEVELS; i++) {
+            int slots = (i == 0) ? ROOT_SLOTS : SLOTS;
+            wheel[i] = new Entry[slots];
+            for (int j = 0; j < slots; j++) {
+                wheel[i][j] = new Entry(null, null, 0);
+            }
+        }
+    }
+
+    /*
+     * TVTimer
+     */
+
+    public TVTimerSpec scheduleTimerSpec(TVTimerSpec spec) throws TVTimerScheduleFailedException {
+        if (spec == null) {
+            throw new NullPointerException();
+        }
+
+        long now = System.currentTimeMillis();
+        long when;
+        if (spec.isAbsolute()) {
+            when = spec.getTime();
+        } else {
+            when = now + spec.getTime();
+        }
+
+        Entry entry = new Entry(spec, BDJXletContext.getCurrentContext(), when);
+
+        synchronized (lock) {
+            if (stopped) {
+                throw new TVTimerScheduleFailedException("timer stopped");
+            }
+            if (specs.isEmpty()) {
+                /* wheel is empty: skip idle time instead of ticking through it */
+                currentTick = Math.max(currentTick, toTick(now));
+            }
+            ArrayList entries = (ArrayList)specs.get(spec);
+            if (entries == null) {
+                entries = new ArrayList(1);
+                specs.put(spec, entries);
+            }
+            entries.add(entry);
+            insert(entry);
+            startThread();
+            lock.notifyAll();
+        }
+
+        return spec;
+    }
+
+    public long getGranularity() {
+        return TICK;
+    }
+
+    public long getMinRepeatInterval() {
+        return TICK;
+    }
+
+    public void deschedule(TVTimerSpec spec) {
+        if (spec == null) {
+            return;
+        }
+        synchronized (lock) {
+            ArrayList entries = (ArrayList)specs.remove(spec);
+            if (entries != null) {
+                for (int i = 0; i < entries.size(); i++) {
+                    ((Entry)entries.get(i)).unlink();
+                }
+            }
+        }
+    }
+
+    /*
+     * Timing wheel
+     *
+     * Level 0 has one slot for each tick; each slot of level n covers
+     * one full rotation of level n-1. Timers are moved to lower levels
+     * when their slot is reached (cascade).
+     */
+
+    private static final int TICK = 10;  /* ms */
+
+    private static final int ROOT_BITS  = 8;
+    private static final int ROOT_SLOTS = 1 << ROOT_BITS;
+    private static final int BITS       = 6;
+    private static final int SLOTS      = 1 << BITS;
+    private static final int LEVELS     = 4;
+    private static final long MAX_DELTA = (1L << (ROOT_BITS + (LEVELS - 1) * BITS)) - 1;
+
+    /* timer entry. Linked to wheel slot list (slot head is a dummy entry). */
+    private static class Entry {
+        Entry(TVTimerSpec spec, BDJXletContext ctx, long when) {
+            this.spec = spec;
+            this.ctx = ctx;
+            this.when = when;
+            prev = next = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = next = this;
+        }
+
+        void append(Entry entry) {
+            entry.prev = prev;
+            entry.next = this;
+            prev.next = entry;
+            prev = entry;
+        }
+
+        boolean isEmpty() {
+            return next == this;
+        }
+
+        final TVTimerSpec spec;
+        final BDJXletContext ctx;
+        long when;      /* ms */
+        long expires;   /* tick */
+        Entry prev, next;
+    }
+
+    private final Object lock = new Object();
+    private final Entry[][] wheel = new Entry[LEVELS][];
+    private final HashMap specs = new HashMap();   /* TVTimerSpec -> ArrayList of Entry */
+    private final long baseTime;
+    private long currentTick = 0;
+    private boolean stopped = false;
+    private Thread thread = null;
+
+    private long toTick(long time) {
+        long t = time - baseTime;
+        /* round up: never go off early */
+        return t <= 0 ? 0 : (t + TICK - 1) / TICK;
+    }
+
+    /* called with lock held */
+    private void insert(Entry entry) {
+        long expires = toTick(entry.when);
+        if (expires < currentTick) {
+            expires = currentTick;
+        }
+        entry.expires = expires;
+
+        long delta = expires - currentTick;
+        if (delta > MAX_DELTA) {
+            /* re-inserted when the slot is cascaded */
+            delta = MAX_DELTA;
+            expires = currentTick + delta;
+        }
+
+        Entry slot;
+        if (delta < ROOT_SLOTS) {
+            slot = wheel[0][(int)(expires & (ROOT_SLOTS - 1))];
+        } else {
+            int level = 1;
+            while (delta >= (1L << (ROOT_BITS + level * BITS))) {
+                level++;
+            }
+            int shift = ROOT_BITS + (level - 1) * BITS;
+            slot = wheel[level][(int)((expires >> shift) & (SLOTS - 1))];
+        }
+        slot.append(entry);
+    }
+
+    /* move timers of the current slot of level to lower levels. Returns slot index. */
+    private int cascade(int level) {
+        int shift = ROOT_BITS + (level - 1) * BITS;
+        int index = (int)((currentTick >> shift) & (SLOTS - 1));
+        Entry head = wheel[level][index];
+        while (!head.isEmpty()) {
+            Entry entry = head.next;
+            entry.unlink();
+            insert(entry);
+        }
+        return index;
+    }
+
+    /* process one tick. Expired entries are added to list. Called with lock held. */
+    private void tick(ArrayList expired) {
+        int index = (int)(currentTick & (ROOT_SLOTS - 1));
+        if (index == 0) {
+            for (int level = 1; level < LEVELS; level++) {
+                if (cascade(level) != 0) {
+                    break;
+                }
+            }
+        }
+
+        Entry head = wheel[0][index];
+        while (!head.isEmpty()) {
+            Entry entry = head.next;
+            entry.unlink();
+            if (entry.expires > currentTick) {
+                /* clamped to MAX_DELTA */
+                insert(entry);
+            } else {
+                expired.add(entry);
+            }
+        }
+        currentTick++;
+    }
+
+    /* ticks until next possible timer event. Called with lock held. */
+    private long idleTicks() {
+        if (specs.isEmpty()) {
+            return -1;
+        }
+        int index = (int)(currentTick & (ROOT_SLOTS - 1));
+        for (int i = 0; i < ROOT_SLOTS - index; i++) {
+            if (!wheel[0][index + i].isEmpty()) {
+                return i;
+            }
+        }
+        /* next cascade */
+        return ROOT_SLOTS - index;
+    }
+
+    private void cancelContext(BDJXletContext ctx) {
+        synchronized (lock) {
+            for (Iterator it = specs.values().iterator(); it.hasNext(); ) {
+                ArrayList entries = (ArrayList)it.next();
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    Entry entry = (Entry)entries.get(i);
+                    if (entry.ctx == ctx) {
+                        entry.unlink();
+                        entries.remove(i);
+                    }
+                }
+                if (entries.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void stop() {
+        Thread t;
+        synchronized (lock) {
+            stopped = true;
+            for (Iterator it = specs.values().iterator(); it.hasNext(); ) {
+                ArrayList entries = (ArrayList)it.next();
+                for (int i = 0; i < entries.size(); i++) {
+                    ((Entry)entries.get(i)).unlink();
+                }
+            }
+            specs.clear();
+            t = thread;
+            lock.notifyAll();
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+            }
+        }
+    }
+
+    /* called with lock held */
+    private void startThread() {
+        if (thread != null) {
+            return;
+        }
+        /* run outside of Xlet thread group */
+        thread = (Thread)AccessController.doPrivileged(
+            new PrivilegedAction() {
+                public Object run() {
+                    ThreadGroup group = Thread.currentThread().getThreadGroup();
+                    while (group.getParent() != null) {
+                        group = group.getParent();
+                    }
+                    return new Thread(group, new Runnable() {
+                            public void run() {
+                                runTimer();
+                            }
+                        }, "TVTimer");
+                }
+            });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runTimer() {
+        ArrayList expired = new ArrayList();
+        while (true) {
+            synchronized (lock) {
+                while (!stopped) {
+                    long now = toTick(System.currentTimeMillis());
+                    if (now > currentTick && !specs.isEmpty()) {
+                        break;
+                    }
+                    long idle = idleTicks();
+                    if (idle < 0) {
+                        /* no timers: keep clock running */
+                        currentTick = Math.max(currentTick, now);
+                    }
+                    try {
+                        if (idle < 0) {
+                            lock.wait();
+                        } else {
+                            lock.wait(Math.max(1, (currentTick + idle) * TICK + baseTime - System.currentTimeMillis()));
+                        }
+                    } catch (InterruptedException e) {
+                    }
+                }
+                if (stopped) {
+                    thread = null;
+                    return;
+                }
+
+                long now = toTick(System.currentTimeMillis());
+                while (currentTick < now) {
+                    tick(expired);
+                }
+
+                /* remove one-shot timers, re-schedule repeating timers */
+                for (int i = 0; i < expired.size(); i++) {
+                    Entry entry = (Entry)expired.get(i);
+                    TVTimerSpec spec = entry.spec;
+                    if (!spec.isAbsolute() && spec.isRepeat()) {
+                        long period = Math.max(spec.getTime(), TICK);
+                        if (spec.isRegular()) {
+                            entry.when += period;
+                            long time = System.currentTimeMillis();
+                            if (entry.when < time) {
+                                /* skip missed intervals */
+                                entry.when += ((time - entry.when) / period + 1) * period;
+                            }
+                        } else {
+                            entry.when = System.currentTimeMillis() + period;
+                        }
+                        insert(entry);
+                    } else {
+                        ArrayList entries = (ArrayList)specs.get(spec);
+                        if (entries != null) {
+                            entries.remove(entry);
+                            if (entries.isEmpty()) {
+                                specs.remove(spec);
+                            }
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < expired.size(); i++) {
+                Entry entry = (Entry)expired.get(i);
+                if (entry.ctx != null && entry.ctx.isReleased()) {
+                    continue;
+                }
+                try {
+                    entry.spec.notifyListeners(this);
+                } catch (Throwable t) {
+                    logger.error("timer notification failed: " + t);
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger(TVTimerImpl.class.getName());
+}
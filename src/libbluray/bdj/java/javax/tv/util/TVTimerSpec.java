@@ -23,7 +23,7 @@ import java.util.Enumeration;
 import java.io.Serializable;
 import java.util.Vector;
 
-import org.videolan.Logger;
+import org.videolan.BDJListeners;
 
 public class TVTimerSpec implements Serializable
 {
@@ -31,6 +31,7 @@ public class TVTimerSpec implements Serializable
     private boolean regular;
     private boolean repeat;
     private long    time;
+    private transient BDJListeners listeners = null;
 
     public TVTimerSpec() {
         absolute = true;
@@ -56,15 +57,23 @@ public class TVTimerSpec implements Serializable
     }
 
     public void addTVTimerWentOffListener(TVTimerWentOffListener l) {
-        Logger.unimplemented(TVTimer.class.getName(), "addTVTimerWentOffListener");
+        getListeners().add(l);
     }
 
     public void removeTVTimerWentOffListener(TVTimerWentOffListener l) {
-        Logger.unimplemented(TVTimer.class.getName(), "removeTVTimerWentOffListener");
+        getListeners().remove(l);
     }
 
     public void notifyListeners(TVTimer source) {
-        Logger.unimplemented(TVTimer.class.getName(), "notifyListeners");
+        getListeners().putCallback(new TVTimerWentOffEvent(source, this));
+    }
+
+    private synchronized BDJListeners getListeners() {
+        /* not serialized */
+        if (listeners == null) {
+            listeners = new BDJListeners();
+        }
+        return listeners;
     }
 
     public void setAbsolute(boolean absolute) {
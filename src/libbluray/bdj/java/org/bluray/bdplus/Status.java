@@ -52,7 +52,9 @@ public class Status {
 
     public int get() {
         int val = Libbluray.readPSR(104);
-        logger.trace("get(): 0x" + Integer.toHexString(val));
+        if (logger.isEnabled(Logger.TRACE)) {
+            logger.trace("get(): 0x" + Integer.toHexString(val));
+        }
         return val;
     }
 
@@ -61,17 +63,23 @@ public class Status {
     }
 
     public void send(int data) {
-        logger.trace("send(0x" + Integer.toHexString(data) + ")");
+        if (logger.isEnabled(Logger.TRACE)) {
+            logger.trace("send(0x" + Integer.toHexString(data) + ")");
+        }
         Libbluray.writePSR(103, data);
     }
 
     public void set(int data) {
-        logger.trace("set(0x" + Integer.toHexString(data) + ")");
+        if (logger.isEnabled(Logger.TRACE)) {
+            logger.trace("set(0x" + Integer.toHexString(data) + ")");
+        }
         Libbluray.writePSR(104, data);
     }
 
     public void receive(int data) {
-        logger.trace("receive(0x" + Integer.toHexString(data) + ")");
+        if (logger.isEnabled(Logger.TRACE)) {
+            logger.trace("receive(0x" + Integer.toHexString(data) + ")");
+        }
         listeners.putPSR102Callback(data);
     }
 
@@ -164,7 +164,9 @@ public class EventManager implements ResourceServer {
                 if (item.context == context) {
                     if (item.userEvents.contains(ue)) {
                         result = BDJHelper.postKeyEvent(type, modifiers, keyCode);
-                        logger.info("Key posted to exclusive AWT event listener, r=" + result);
+                        if (logger.isEnabled(Logger.INFO)) {
+                            logger.info("Key posted to exclusive AWT event listener, r=" + result);
+                        }
                         return true;
                     }
                 }
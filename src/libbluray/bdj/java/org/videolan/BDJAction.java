@@ -73,6 +73,14 @@ public abstract class BDJAction {
         }
     }
 
+    /*
+     * Returns true if this action makes queued action redundant.
+     * Used to coalesce actions when action queue is full.
+     */
+    protected boolean replaces(BDJAction queued) {
+        return false;
+    }
+
     protected abstract void doAction();
 
     private int state = NOT_PROCESSED;
@@ -18,7 +18,28 @@
 
 package org.videolan;
 
-import java.util.LinkedList;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+
+/*
+ * Single-consumer action queue.
+ *
+ * Producers append to pending list; consumer takes all pending actions
+ * at once and runs them without holding the queue lock.
+ * Consumer is woken up only when it is waiting for new actions.
+ *
+ * Queue can be bounded: when the queue is full, new action replaces a
+ * queued action it makes redundant (see BDJAction.replaces()).
+ * Actions are never dropped otherwise.
+ *
+ * Worker thread is started when an action is queued, and it exits after
+ * being idle for IDLE_TIMEOUT ms. Idle Xlets do not keep queue threads alive.
+ * Worker always runs in the thread group of the queue, so
+ * BDJXletContext.getCurrentContext() works in actions.
+ *
+ * Long-running actions are detected by a single monitor thread shared by all queues.
+ */
 
 public class BDJActionQueue implements Runnable {
 
@@ -27,154 +48,299 @@ public class BDJActionQueue implements Runnable {
     }
 
     public static BDJActionQueue create(BDJThreadGroup threadGroup, String name) {
-        BDJActionQueue aq = new BDJActionQueue(threadGroup, name);
-        aq.startThread(threadGroup, name);
+        return create(threadGroup, name, 0);
+    }
+
+    /* capacity: max. number of pending actions before coalescing (0 = unbounded) */
+    public static BDJActionQueue create(BDJThreadGroup threadGroup, String name, int capacity) {
+        BDJActionQueue aq = new BDJActionQueue(threadGroup, name, capacity);
+        Monitor.register(aq);
         return aq;
     }
 
-    private BDJActionQueue(BDJThreadGroup threadGroup, String name) {
+    private BDJActionQueue(BDJThreadGroup threadGroup, String name, int capacity) {
         if (threadGroup == null) {
             if (BDJXletContext.getCurrentContext() != null) {
                 logger.error("BDJActionQueue " + name + " created from wrong context: " + Logger.dumpStack());
                 // throw new SecurityException();
             }
         }
-    }
+        this.name = name;
+        this.capacity = capacity;
 
-    private void startThread(BDJThreadGroup threadGroup, String name) {
         /* run all actions in given thread group / xlet context */
-        thread = new Thread(threadGroup, this, name + ".BDJActionQueue");
-        thread.setDaemon(true);
-        thread.start();
+        this.threadGroup = (threadGroup != null) ? threadGroup : Thread.currentThread().getThreadGroup();
+    }
+
+    /* called with lock held */
+    private void startThread() {
+        final Runnable r = this;
+        /* put() may be called from Xlet context */
+        Thread t = (Thread)AccessController.doPrivileged(
+            new PrivilegedAction() {
+                public Object run() {
+                    Thread t = new Thread(threadGroup, r, name + ".BDJActionQueue");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        t.start();
+        thread = t;
+    }
 
-        watchdog = new Watchdog();
-        watchdog.start(name);
+    /* true if worker thread is currently running */
+    public boolean isThreadAlive() {
+        Thread t = thread;
+        return t != null && t.isAlive();
     }
 
     public void shutdown() {
 
-        synchronized (actions) {
+        Thread t;
+        synchronized (lock) {
             terminated = true;
-            actions.addLast(null);
-            actions.notifyAll();
+            t = thread;
+            if (t != null) {
+                pending.add(null);
+                if (waiting) {
+                    lock.notify();
+                }
+            }
         }
-        watchdog.shutdown();
-        try {
-            thread.join();
-        } catch (InterruptedException t) {
-            logger.error("Error joining thread: " + t);
+        Monitor.unregister(this);
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                logger.error("Error joining thread: " + e);
+            }
         }
     }
 
     public void run() {
+        try {
+            runWorker();
+        } finally {
+            synchronized (lock) {
+                if (thread == Thread.currentThread()) {
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    private void runWorker() {
+        ArrayList batch = new ArrayList();
         while (true) {
-            Object action;
-            synchronized (actions) {
-                while (actions.isEmpty()) {
+            synchronized (lock) {
+                long idleStart = System.currentTimeMillis();
+                while (pending.isEmpty()) {
+                    long wait = IDLE_TIMEOUT - (System.currentTimeMillis() - idleStart);
+                    if (wait <= 0) {
+                        /* idle: exit. Next put() starts new worker. */
+                        thread = null;
+                        return;
+                    }
+                    waiting = true;
                     try {
-                        actions.wait();
+                        lock.wait(wait);
                     } catch (InterruptedException e) {
                     }
+                    waiting = false;
                 }
-                action = actions.removeFirst();
+                /* take all pending actions */
+                ArrayList tmp = pending;
+                pending = batch;
+                batch = tmp;
             }
-            if (action == null)
-                return;
-            try {
-                watchdog.startAction(action);
 
-                ((BDJAction)action).process();
+            int count = batch.size();
+            for (int i = 0; i < count; i++) {
+                Object action = batch.get(i);
+                if (action == null) {
+                    batch.clear();
+                    return;
+                }
+                try {
+                    currentAction = action;
+                    actionCount++;
+
+                    ((BDJAction)action).process();
 
-                watchdog.endAction();
-            } catch (ThreadDeath d) {
-                System.err.println("action failed: " + d + "\n");
-                throw d;
-            } catch (Throwable e) {
-                System.err.println("action failed: " + e + "\n" + Logger.dumpStack(e));
+                    currentAction = null;
+                } catch (ThreadDeath d) {
+                    System.err.println("action failed: " + d + "\n");
+                    throw d;
+                } catch (Throwable e) {
+                    currentAction = null;
+                    System.err.println("action failed: " + e + "\n" + Logger.dumpStack(e));
+                }
             }
+            batch.clear();
         }
     }
 
     public void put(BDJAction action) {
         if (action != null) {
-            synchronized (actions) {
-                if (!terminated) {
-                    actions.addLast(action);
-                    actions.notifyAll();
-                } else {
+            BDJAction replaced = null;
+            ArrayList failed = null;
+            synchronized (lock) {
+                if (terminated) {
                     logger.error("Action skipped (queue stopped): " + action);
                     action.abort();
+                    return;
+                }
+                if (capacity > 0 && pending.size() >= capacity) {
+                    replaced = coalesce(action);
+                }
+                if (replaced == null) {
+                    pending.add(action);
+                }
+                if (waiting) {
+                    lock.notify();
+                } else if (thread == null) {
+                    try {
+                        startThread();
+                    } catch (Throwable t) {
+                        logger.error("Error starting " + name + " thread: " + t);
+                        failed = new ArrayList(pending);
+                        pending.clear();
+                    }
+                }
+            }
+            /* release possible waiters */
+            if (replaced != null) {
+                replaced.abort();
+            }
+            if (failed != null) {
+                for (int i = 0; i < failed.size(); i++) {
+                    ((BDJAction)failed.get(i)).abort();
                 }
             }
         }
     }
 
+    /* called with lock held. Returns replaced action or null. */
+    private BDJAction coalesce(BDJAction action) {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            BDJAction queued = (BDJAction)pending.get(i);
+            if (queued != null && action.replaces(queued)) {
+                /* keep event order: drop the old action and queue the new one at the end */
+                pending.remove(i);
+                pending.add(action);
+                return queued;
+            }
+        }
+        if (!overflowLogged) {
+            overflowLogged = true;
+            logger.info("Queue " + name + " exceeds " + capacity + " pending actions");
+        }
+        return null;
+    }
+
+    private static final int IDLE_TIMEOUT = 10000;  /* ms */
+
+    private final String name;
+    private final int capacity;
+    private final ThreadGroup threadGroup;
+    private final Object lock = new Object();
+    private ArrayList pending = new ArrayList();
+    private boolean waiting = false;
     private boolean terminated = false;
-    private Thread thread;
-    private LinkedList actions = new LinkedList();
+    private boolean overflowLogged = false;
+    private volatile Thread thread = null;
+
+    /* consumer state, sampled by monitor */
+    private volatile Object currentAction = null;
+    private volatile int actionCount = 0;
 
     private static final Logger logger = Logger.getLogger(BDJActionQueue.class.getName());
 
     /*
+     * Shared monitor for all action queues.
      *
+     * Monitor samples queue state periodically and logs actions
+     * that have been running longer than timeout.
      */
 
-    private Watchdog watchdog = null;
-
-    class Watchdog implements Runnable {
+    private static class Monitor implements Runnable {
 
-        private Object currentAction = null;
-        private boolean terminate = false;
+        private static final int INTERVAL = 1000;  /* ms */
+        private static final int TIMEOUT  = 5;     /* intervals */
 
-        Watchdog() {}
+        private static final ArrayList queues = new ArrayList();
+        private static Thread monitorThread = null;
 
-        synchronized void start(String name) {
-            Thread t = new Thread(null, this, name + ".BDJActionQueue.Monitor");
-            t.setDaemon(true);
-            t.start();
+        static void register(BDJActionQueue queue) {
+            synchronized (queues) {
+                queues.add(new State(queue));
+                if (monitorThread == null) {
+                    monitorThread = new Thread(null, new Monitor(), "BDJActionQueue.Monitor");
+                    monitorThread.setDaemon(true);
+                    monitorThread.start();
+                }
+            }
         }
 
-        public synchronized void shutdown() {
-            terminate = true;
-            notifyAll();
+        static void unregister(BDJActionQueue queue) {
+            synchronized (queues) {
+                for (int i = 0; i < queues.size(); i++) {
+                    if (((State)queues.get(i)).queue == queue) {
+                        queues.remove(i);
+                        break;
+                    }
+                }
+                queues.notifyAll();
+            }
         }
 
-        public synchronized void startAction(Object action) {
-            currentAction = action;
-            notifyAll();
+        public void run() {
+            synchronized (queues) {
+                while (!queues.isEmpty()) {
+                    try {
+                        queues.wait(INTERVAL);
+                    } catch (InterruptedException e) {
+                    }
+                    for (int i = 0; i < queues.size(); i++) {
+                        ((State)queues.get(i)).check();
+                    }
+                }
+                /* stop when there are no queues left */
+                monitorThread = null;
+            }
         }
 
-        public synchronized void endAction() {
-            currentAction = null;
-            notifyAll();
-        }
+        private static class State {
+            State(BDJActionQueue queue) {
+                this.queue = queue;
+            }
 
-        public void run() {
-            Object loggedAction = null;
-            synchronized (this) {
-                while (!terminate) {
+            void check() {
+                Object action = queue.currentAction;
+                int count = queue.actionCount;
 
-                    if (loggedAction != null && currentAction != loggedAction) {
-                        loggedAction = null;
-                        logger.info("Callback returned (" + thread + ")");
-                    }
+                if (loggedAction != null && (action != loggedAction || count != lastCount)) {
+                    loggedAction = null;
+                    logger.info("Callback returned (" + queue.thread + ")");
+                }
 
-                    try {
-                        if (currentAction == null) {
-                            wait();
-                        } else {
-                            Object cachedAction = currentAction;
-                            wait(5000);
-                            if (currentAction == cachedAction && loggedAction != cachedAction) {
-                                logger.error("Callback timeout in " + thread + ", callback=" + currentAction + "\n" +
-                                             PortingHelper.dumpStack(thread));
-                                loggedAction = cachedAction;
-                            }
-                        }
-                    } catch (InterruptedException e) {
-                    }
+                if (action == null || count != lastCount) {
+                    lastCount = count;
+                    ticks = 0;
+                    return;
+                }
+
+                if (++ticks >= TIMEOUT && loggedAction == null) {
+                    logger.error("Callback timeout in " + queue.thread + ", callback=" + action + "\n" +
+                                 PortingHelper.dumpStack(queue.thread));
+                    loggedAction = action;
                 }
             }
+
+            final BDJActionQueue queue;
+            private int lastCount = 0;
+            private int ticks = 0;
+            private Object loggedAction = null;
         }
     }
 }
@@ -47,8 +47,13 @@ class BDJAppProxy implements DVBJProxy, Runnable {
          * We want event dispatcher thread to be inside xlet thread group
          * -> event queue must be created from thread running inside applet thread group.
          */
-        while (context.getEventQueue() == null) {
-            Thread.yield();
+        synchronized (this) {
+            while (context.getEventQueue() == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                }
+            }
         }
     }
 
@@ -253,6 +258,8 @@ class BDJAppProxy implements DVBJProxy, Runnable {
                 xlet.destroyXlet(force);
 
                 context.closeSockets();
+                /* pooled IXC threads may be idle in Xlet thread group */
+                context.releaseIxcThreads();
                 context.getThreadGroup().waitForShutdown(1000, 1 + context.numEventQueueThreads());
 
                 context.exitXlet();
@@ -299,6 +306,9 @@ class BDJAppProxy implements DVBJProxy, Runnable {
     public void run() {
         if (context.getEventQueue() == null)
             context.setEventQueue(new EventQueue());
+        synchronized (this) {
+            notifyAll();
+        }
 
         for (;;) {
             AppCommand cmd;
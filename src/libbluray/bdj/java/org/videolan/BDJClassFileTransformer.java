@@ -96,6 +96,149 @@ public class BDJClassFileTransformer
         return r;
     }
 
+    /*
+     * Check if class file has broken debug info
+     * (LocalVariableTable entry pointing to invalid constant pool entry).
+     * Only class file structure is parsed.
+     */
+    public boolean hasBrokenDebugInfo(byte[] b)
+    {
+        try {
+            return scanClass(b);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            /* truncated class file. Let class loader report the error. */
+            return false;
+        }
+    }
+
+    private static int u2(byte[] b, int pos) {
+        return ((b[pos] & 0xff) << 8) | (b[pos + 1] & 0xff);
+    }
+
+    private static int u4(byte[] b, int pos) {
+        return (u2(b, pos) << 16) | u2(b, pos + 2);
+    }
+
+    private static boolean scanClass(byte[] b) {
+        if (u4(b, 0) != 0xcafebabe) {
+            return false;
+        }
+
+        /* constant pool */
+        int cpCount = u2(b, 8);
+        int[] utf8 = new int[cpCount]; /* offset of Utf8 entries */
+        int pos = 10;
+        for (int i = 1; i < cpCount; i++) {
+            int tag = b[pos] & 0xff;
+            switch (tag) {
+                case 1:  /* Utf8 */
+                    utf8[i] = pos;
+                    pos += 3 + u2(b, pos + 1);
+                    break;
+                case 5:  /* Long */
+                case 6:  /* Double */
+                    pos += 9;
+                    i++;
+                    break;
+                case 7: case 8: case 16: case 19: case 20:
+                    pos += 3;
+                    break;
+                case 15: /* MethodHandle */
+                    pos += 4;
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    pos += 5;
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        /* access, this, super, interfaces */
+        pos += 6;
+        pos += 2 + 2 * u2(b, pos);
+
+        /* fields */
+        int count = u2(b, pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            pos = skipAttributes(b, pos + 6);
+        }
+
+        /* methods */
+        count = u2(b, pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            int attrCount = u2(b, pos + 6);
+            pos += 8;
+            for (int a = 0; a < attrCount; a++) {
+                int length = u4(b, pos + 2);
+                if (isUtf8(b, utf8, u2(b, pos), "Code") && scanCode(b, utf8, pos + 6)) {
+                    return true;
+                }
+                pos += 6 + length;
+            }
+        }
+
+        return false;
+    }
+
+    private static int skipAttributes(byte[] b, int pos) {
+        int count = u2(b, pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            pos += 6 + u4(b, pos + 2);
+        }
+        return pos;
+    }
+
+    private static boolean isUtf8(byte[] b, int[] utf8, int index, String value) {
+        if (index <= 0 || index >= utf8.length || utf8[index] == 0) {
+            return false;
+        }
+        int pos = utf8[index];
+        int length = u2(b, pos + 1);
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (b[pos + 3 + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidUtf8(int[] utf8, int index) {
+        return index > 0 && index < utf8.length && utf8[index] != 0;
+    }
+
+    /* returns true if Code attribute has broken local variable table */
+    private static boolean scanCode(byte[] b, int[] utf8, int pos) {
+        pos += 4;                      /* max_stack, max_locals */
+        pos += 4 + u4(b, pos);         /* code */
+        pos += 2 + 8 * u2(b, pos);     /* exception table */
+
+        int attrCount = u2(b, pos);
+        pos += 2;
+        for (int a = 0; a < attrCount; a++) {
+            int nameIndex = u2(b, pos);
+            int length = u4(b, pos + 2);
+            if (isUtf8(b, utf8, nameIndex, "LocalVariableTable") ||
+                isUtf8(b, utf8, nameIndex, "LocalVariableTypeTable")) {
+                int count = u2(b, pos + 6);
+                for (int i = 0; i < count; i++) {
+                    int entry = pos + 8 + i * 10;
+                    if (!isValidUtf8(utf8, u2(b, entry + 4)) || !isValidUtf8(utf8, u2(b, entry + 6))) {
+                        return true;
+                    }
+                }
+            }
+            pos += 6 + length;
+        }
+        return false;
+    }
+
     private static class MyClassVisitor extends ClassVisitor {
         public MyClassVisitor(ClassVisitor cv) {
             super(Opcodes.ASM4, cv);
@@ -21,6 +21,7 @@ package org.videolan;
 
 import java.net.MalformedURLException;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
@@ -30,9 +31,12 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Map;
+import java.util.jar.Manifest;
 
 import java.security.AccessController;
+import java.security.CodeSource;
 import java.security.PrivilegedAction;
+import java.security.cert.Certificate;
 
 import javax.tv.xlet.Xlet;
 
@@ -149,6 +153,11 @@ public class BDJClassLoader extends URLClassLoader {
         for (int i = 0; i < classPath.size(); i++)
             addURL((URL)classPath.get(i));
         this.xletClass = xletClass;
+
+        synchronized (this) {
+            /* class path changed, re-build index */
+            closeJarIndex();
+        }
     }
 
     public Class loadClass(String name) throws ClassNotFoundException {
@@ -206,6 +215,130 @@ public class BDJClassLoader extends URLClassLoader {
         return null;
     }
 
+    /*
+     * Class loading from JAR index.
+     *
+     * Cached JAR files in class path are indexed once. Class files are read
+     * directly to exact-sized buffer and defined without going through
+     * URL / JarFile handlers.
+     */
+
+    private static final class IndexedJar {
+        IndexedJar(URL url, JarIndex index) {
+            this.index = index;
+            this.codeSource = new CodeSource(url, (Certificate[])null);
+        }
+
+        final JarIndex   index;
+        final CodeSource codeSource;
+        Manifest         manifest = null;
+        boolean          manifestLoaded = false;
+    }
+
+    /* called with class loader lock held. null entry = not indexed. */
+    private IndexedJar[] getJarIndex() {
+        if (jars == null) {
+            URL[] urls = getURLs();
+            jars = new IndexedJar[urls.length];
+            for (int i = 0; i < urls.length; i++) {
+                if (urls[i].getProtocol().equals("file") && urls[i].getFile().endsWith(".jar")) {
+                    try {
+                        jars[i] = new IndexedJar(urls[i], new JarIndex(urls[i].getFile()));
+                        ClassRepairCache.prescan(urls[i].getFile());
+                    } catch (IOException e) {
+                        logger.info("Can't index " + urls[i] + ": " + e);
+                    }
+                }
+            }
+        }
+        return jars;
+    }
+
+    protected synchronized void closeJarIndex() {
+        if (jars != null) {
+            for (int i = 0; i < jars.length; i++) {
+                if (jars[i] != null) {
+                    jars[i].index.close();
+                }
+            }
+            jars = null;
+        }
+    }
+
+    private static Manifest getManifest(IndexedJar jar) {
+        if (!jar.manifestLoaded) {
+            jar.manifestLoaded = true;
+            JarIndex.Entry entry = jar.index.getEntry("META-INF/MANIFEST.MF");
+            if (entry != null) {
+                try {
+                    jar.manifest = new Manifest(new ByteArrayInputStream(jar.index.read(entry)));
+                } catch (IOException e) {
+                    logger.error("Error reading manifest from " + jar.codeSource.getLocation() + ": " + e);
+                }
+            }
+        }
+        return jar.manifest;
+    }
+
+    private void definePackageFor(String name, IndexedJar jar) {
+        int pos = name.lastIndexOf('.');
+        if (pos < 0) {
+            return;
+        }
+        String pkgName = name.substring(0, pos);
+        if (getPackage(pkgName) != null) {
+            return;
+        }
+        Manifest man = getManifest(jar);
+        try {
+            if (man != null) {
+                definePackage(pkgName, man, jar.codeSource.getLocation());
+            } else {
+                definePackage(pkgName, null, null, null, null, null, null, null);
+            }
+        } catch (IllegalArgumentException e) {
+            /* defined by another thread */
+        }
+    }
+
+    /*
+     * Find class from indexed JAR files.
+     * Returns null if class should be searched with URLClassLoader.
+     */
+    private synchronized Class findIndexedClass(String name) throws ClassNotFoundException {
+        IndexedJar[] jars = getJarIndex();
+        String path = name.replace('.', '/').concat(".class");
+
+        for (int i = 0; i < jars.length; i++) {
+            if (jars[i] == null) {
+                /* not indexed. Keep class path search order. */
+                return null;
+            }
+            JarIndex.Entry entry = jars[i].index.getEntry(path);
+            if (entry == null) {
+                continue;
+            }
+
+            byte[] b;
+            try {
+                b = jars[i].index.read(entry);
+            } catch (IOException e) {
+                logger.error("Error reading " + path + " from " + jars[i].codeSource.getLocation() + ": " + e);
+                return null;
+            }
+            bytesLoaded += b.length;
+
+            definePackageFor(name, jars[i]);
+            try {
+                return defineClass(name, b, 0, b.length, jars[i].codeSource);
+            } catch (ClassFormatError ce) {
+                return repairClass(name, b, ce);
+            }
+        }
+
+        throw new ClassNotFoundException(name);
+    }
+
     private byte[] loadClassCode(String name) throws ClassNotFoundException {
         String path = name.replace('.', '/').concat(".class");
 
@@ -249,29 +382,47 @@ public class BDJClassLoader extends URLClassLoader {
         }
     }
 
+    private Class repairClass(String name, byte[] b, ClassFormatError ce) throws ClassNotFoundException {
+        if (b == null) {
+            logger.error("loadClassCode(" + name + ") failed");
+            /* this usually kills Xlet ... */
+            throw ce;
+        }
+        try {
+            b = ClassRepairCache.repair(b);
+            return defineClass(b, 0, b.length);
+        } catch (ThreadDeath td) {
+            throw td;
+        } catch (Throwable t) {
+            logger.error("Class rewriting failed: " + t);
+            throw new ClassNotFoundException(name);
+        }
+    }
+
     protected Class findClass(String name) throws ClassNotFoundException {
+        long start = System.nanoTime();
+        Class c = findClassImpl(name);
+        synchronized (this) {
+            classesLoaded++;
+            loadTime += System.nanoTime() - start;
+        }
+        return c;
+    }
+
+    private Class findClassImpl(String name) throws ClassNotFoundException {
         try {
+            Class c = findIndexedClass(name);
+            if (c != null) {
+                return c;
+            }
+
             return super.findClass(name);
 
         } catch (ClassFormatError ce) {
 
             /* try to "fix" broken class file */
             /* if we got ClassFormatError, package was already created. */
-            byte[] b = loadClassCode(name);
-            if (b == null) {
-                logger.error("loadClassCode(" + name + ") failed");
-                /* this usually kills Xlet ... */
-                throw ce;
-            }
-            try {
-                b = new BDJClassFileTransformer().strip(b, 0, b.length);
-                return defineClass(b, 0, b.length);
-            } catch (ThreadDeath td) {
-                throw td;
-            } catch (Throwable t) {
-                logger.error("Class rewriting failed: " + t);
-                throw new ClassNotFoundException(name);
-            }
+            return repairClass(name, loadClassCode(name), ce);
 
         } catch (Error er) {
             logger.error("Unexpected error: " + er + " " + Logger.dumpStack(er));
@@ -279,11 +430,18 @@ public class BDJClassLoader extends URLClassLoader {
         }
     }
 
+    protected synchronized String getStatistics() {
+        return "class loader " + xletClass + ": " + classesLoaded + " classes, " +
+            bytesLoaded + " bytes (indexed JARs), " + (loadTime / 1000000) + " ms";
+    }
+
     public URL getResource(String name) {
         URL url;
         name = name.replace('\\', '/');
         url = super.getResource(name);
-        logger.info("getResource(" + name + ") --> " + url);
+        if (logger.isEnabled(Logger.INFO)) {
+            logger.info("getResource(" + name + ") --> " + url);
+        }
         return url;
     }
 
@@ -298,7 +456,9 @@ public class BDJClassLoader extends URLClassLoader {
         URL url;
         name = name.replace('\\', '/');
         url = super.findResource(name);
-        logger.info("findResource(" + name + ") --> " + url);
+        if (logger.isEnabled(Logger.INFO)) {
+            logger.info("findResource(" + name + ") --> " + url);
+        }
         return url;
     }
 
@@ -319,6 +479,12 @@ public class BDJClassLoader extends URLClassLoader {
 
     private String xletClass;
 
+    /* protected by class loader lock */
+    private IndexedJar[] jars = null;
+    private long classesLoaded = 0;
+    private long bytesLoaded = 0;
+    private long loadTime = 0;
+
     private Map hideClasses;  /* classes that should be hidden from Xlet */
     private Map bootClasses;  /* additional bootstrap clases */
     private Map xletClasses;  /* fallback for possibly missing classes */
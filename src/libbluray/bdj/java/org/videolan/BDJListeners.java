@@ -30,6 +30,8 @@ import javax.tv.media.MediaSelectEvent;
 import javax.tv.media.MediaSelectListener;
 import javax.tv.service.selection.ServiceContextEvent;
 import javax.tv.service.selection.ServiceContextListener;
+import javax.tv.util.TVTimerWentOffEvent;
+import javax.tv.util.TVTimerWentOffListener;
 
 import org.bluray.bdplus.StatusListener;
 
@@ -46,6 +48,8 @@ import org.bluray.media.UOMaskTableListener;
 import org.bluray.media.UOMaskTableChangedEvent;
 import org.bluray.media.UOMaskedEvent;
 
+import org.davic.media.MediaTimeEvent;
+import org.davic.media.MediaTimeEventListener;
 import org.davic.resources.ResourceStatusEvent;
 import org.davic.resources.ResourceStatusListener;
 
@@ -119,6 +123,8 @@ public class BDJListeners {
             mediaQueue = false;
         } else if (event instanceof PSR102Status) {
             mediaQueue = false;
+        } else if (event instanceof TVTimerWentOffEvent) {
+            mediaQueue = false;
         }
         putCallback(event, mediaQueue);
     }
@@ -173,6 +179,23 @@ public class BDJListeners {
             return this.getClass().getName() + "[event=" + event + ", listener=" + listener;
         }
 
+        /* state change events: only the latest state matters */
+        protected boolean replaces(BDJAction queued) {
+            if (!(queued instanceof Callback)) {
+                return false;
+            }
+            Callback other = (Callback)queued;
+            if (other.listener != listener || other.event.getClass() != event.getClass()) {
+                return false;
+            }
+            if (event instanceof GainChangeEvent || event instanceof PanningChangeEvent ||
+                event instanceof AngleChangeEvent || event instanceof UOMaskTableChangedEvent ||
+                event instanceof PiPStatusEvent || event instanceof VideoFormatEvent) {
+                return ((EventObject)event).getSource() == ((EventObject)other.event).getSource();
+            }
+            return false;
+        }
+
         protected void doAction() {
             if (event instanceof PlaybackMarkEvent) {
                 ((PlaybackListener)listener).markReached((PlaybackMarkEvent)event);
@@ -226,9 +249,15 @@ public class BDJListeners {
             } else if (event instanceof VideoFormatEvent) {
                 ((VideoFormatListener)listener).receiveVideoFormatEvent((VideoFormatEvent)event);
 
+            } else if (event instanceof MediaTimeEvent) {
+                ((MediaTimeEventListener)listener).receiveMediaTimeEvent((MediaTimeEvent)event);
+
             } else if (event instanceof PSR102Status) {
                 ((StatusListener)listener).receive(((PSR102Status)event).value);
 
+            } else if (event instanceof TVTimerWentOffEvent) {
+                ((TVTimerWentOffListener)listener).timerWentOff((TVTimerWentOffEvent)event);
+
             } else {
                 System.err.println("Unknown event type: " + event.getClass().getName());
             }
@@ -164,6 +164,9 @@ public class BDJLoader {
             logger.error("shutdown() failed: " + e + "\n" + Logger.dumpStack(e));
         }
         queue = null;
+        if (vfsCache != null) {
+            vfsCache.shutdown();
+        }
         vfsCache = null;
     }
 
@@ -236,11 +239,6 @@ public class BDJLoader {
             Libbluray.setUOMask(terminfo.getMenuCallMask(), terminfo.getTitleSearchMask());
             Libbluray.setKeyInterest(bdjo.getKeyInterestTable());
 
-            // initialize AppCaches
-            if (vfsCache != null) {
-                vfsCache.add(bdjo.getAppCaches());
-            }
-
             try {
                 BDJLoaderAdapter a = Libbluray.getLoaderAdapter();
                 if (a != null)
@@ -249,6 +247,11 @@ public class BDJLoader {
                 logger.error("" + t);
             }
 
+            // initialize AppCaches
+            if (vfsCache != null) {
+                vfsCache.add(bdjo.getAppCaches(), appTable);
+            }
+
             // initialize appProxys
             for (int i = 0; i < appTable.length; i++) {
                 if (proxys[i] == null) {
@@ -21,7 +21,9 @@ package org.videolan;
 
 import java.io.FilePermission;
 import java.io.File;
+import java.util.HashMap;
 import java.util.PropertyPermission;
+import java.util.WeakHashMap;
 import java.security.AccessController;
 import java.security.Permission;
 import java.security.PrivilegedAction;
@@ -30,6 +32,7 @@ final class BDJSecurityManager extends SecurityManager {
 
     private String discRoot;
     private String cacheRoot;
+    private String persistentCacheRoot = null;
     private String budaRoot;
     private String persistentRoot;
     private boolean usingUdf = false;
@@ -62,6 +65,16 @@ final class BDJSecurityManager extends SecurityManager {
             }
         }
         cacheRoot = root;
+        invalidateCache();
+    }
+
+    protected void setPersistentCacheRoot(String root) {
+        if (persistentCacheRoot != null) {
+            logger.error("setPersistentCacheRoot(" + root + ") denied\n" + Logger.dumpStack());
+            throw new SecurityException("persistent cache root already set");
+        }
+        persistentCacheRoot = root;
+        invalidateCache();
     }
 
     /*
@@ -69,10 +82,11 @@ final class BDJSecurityManager extends SecurityManager {
      */
 
     private int classDepth0(String name) {
-        StackTraceElement e[] = new Exception("Stack trace").getStackTrace();
-        if (e != null && e.length > 1) {
-            for (int i = 1; i < e.length; i++) {
-                if (e[i].getClassName().equals(name)) {
+        /* getClassContext()[0] is this class */
+        Class c[] = getClassContext();
+        if (c != null && c.length > 1) {
+            for (int i = 1; i < c.length; i++) {
+                if (c[i].getName().equals(name)) {
                     return i - 1;
                 }
             }
@@ -80,6 +94,77 @@ final class BDJSecurityManager extends SecurityManager {
         return -1;
     }
 
+    /*
+     * Decision cache.
+     *
+     * Caches granted decisions that do not depend on the call stack
+     * (BD file reads). Decisions are cached per Xlet context
+     * (relative paths and persistent cache access depend on it).
+     * Files under writable roots are never cached.
+     * Cache is invalidated when JARs are mounted or unmounted.
+     */
+
+    private static final int MAX_CACHE_SIZE = 1024;
+    private static final Object CORE_CONTEXT = new Object();
+
+    private final WeakHashMap grantCache = new WeakHashMap();  /* context -> (permission key -> granted file) */
+    private final HashMap canonCache = new HashMap();          /* absolute path -> canonical path */
+
+    /* called when JARs are mounted or unmounted */
+    protected static void invalidatePathCache() {
+        SecurityManager sm = System.getSecurityManager();
+        if (sm instanceof BDJSecurityManager) {
+            ((BDJSecurityManager)sm).invalidateCache();
+        }
+    }
+
+    private void invalidateCache() {
+        synchronized (grantCache) {
+            grantCache.clear();
+            canonCache.clear();
+        }
+    }
+
+    private static String cacheKey(Permission perm) {
+        return perm.getClass().getName() + "|" + perm.getName() + "|" + perm.getActions();
+    }
+
+    private static Object currentContextKey() {
+        Object ctx = BDJXletContext.getCurrentContext();
+        return ctx == null ? CORE_CONTEXT : ctx;
+    }
+
+    private String getGrant(String key) {
+        Object ctx = currentContextKey();
+        synchronized (grantCache) {
+            HashMap grants = (HashMap)grantCache.get(ctx);
+            return grants == null ? null : (String)grants.get(key);
+        }
+    }
+
+    private void putGrant(String key, String file) {
+        Object ctx = currentContextKey();
+        synchronized (grantCache) {
+            HashMap grants = (HashMap)grantCache.get(ctx);
+            if (grants == null) {
+                grants = new HashMap();
+                grantCache.put(ctx, grants);
+            } else if (grants.size() >= MAX_CACHE_SIZE) {
+                grants.clear();
+            }
+            grants.put(key, file);
+        }
+    }
+
+    private boolean isWritable(String file) {
+        return (budaRoot != null && file.startsWith(budaRoot)) ||
+            (persistentRoot != null && file.startsWith(persistentRoot));
+    }
+
+    private static final RuntimePermission createSecurityManagerPermission = new RuntimePermission("createSecurityManager");
+    private static final RuntimePermission setSecurityManagerPermission = new RuntimePermission("setSecurityManager");
+    private static final RuntimePermission modifyThreadGroupPermission = new RuntimePermission("modifyThreadGroup");
+
     private void deny(Permission perm) {
         logger.error("denied " + perm + "\n" + Logger.dumpStack());
         throw new SecurityException("denied " + perm);
@@ -87,7 +172,7 @@ final class BDJSecurityManager extends SecurityManager {
 
     public void checkPermission(Permission perm) {
         if (perm instanceof RuntimePermission) {
-            if (perm.implies(new RuntimePermission("createSecurityManager"))) {
+            if (perm.implies(createSecurityManagerPermission)) {
 
                 // allow initializing of javax.crypto.JceSecurityManager
                 if (classDepth0("javax.crypto.JceSecurityManager") < 3) {
@@ -96,7 +181,7 @@ final class BDJSecurityManager extends SecurityManager {
 
                 deny(perm);
             }
-            if (perm.implies(new RuntimePermission("setSecurityManager"))) {
+            if (perm.implies(setSecurityManagerPermission)) {
                 if (classDepth0("org.videolan.Libbluray") == 3) {
                     return;
                 }
@@ -110,7 +195,7 @@ final class BDJSecurityManager extends SecurityManager {
                 return;
             }
 
-            if (perm.implies(new RuntimePermission("modifyThreadGroup"))) {
+            if (perm.implies(modifyThreadGroupPermission)) {
                 /* do check here (no need to log failures) */
                 super.checkPermission(perm);
             }
@@ -147,11 +232,21 @@ final class BDJSecurityManager extends SecurityManager {
             }
             /* grant read access to BD files */
             if (perm.getActions().equals("read")) {
-                String file = getCanonPath(perm.getName());
-                if (canRead(file)) {
+                String key = cacheKey(perm);
+                String file = getGrant(key);
+                if (file == null) {
+                    file = getCanonPath(perm.getName());
+                    if (!canRead(file)) {
+                        file = null;
+                    } else if (!isWritable(file)) {
+                        putGrant(key, file);
+                    }
+                }
+                if (file != null) {
                     if (usingUdf) {
                         BDJLoader.accessFile(file);
                     }
+                    MountManager.accessFile(file);
                     return;
                 }
             }
@@ -169,7 +264,9 @@ final class BDJSecurityManager extends SecurityManager {
         }
         else if (urlPermission != null &&
                  urlPermission.isInstance(perm)) {
-            logger.info("grant " + perm);
+            if (logger.isEnabled(Logger.INFO)) {
+                logger.info("grant " + perm);
+            }
             return;
         }
 
@@ -281,6 +378,11 @@ final class BDJSecurityManager extends SecurityManager {
             return true;
         }
 
+        // BD-J core can read persistent cache
+        if (persistentCacheRoot != null && file.startsWith(persistentCacheRoot)) {
+            return BDJXletContext.getCurrentContext() == null;
+        }
+
         return false;
     }
 
@@ -309,6 +411,9 @@ final class BDJSecurityManager extends SecurityManager {
         if (cacheRoot != null && file.startsWith(cacheRoot)) {
             return true;
         }
+        if (persistentCacheRoot != null && file.startsWith(persistentCacheRoot)) {
+            return true;
+        }
 
         logger.error("BD-J write " + file + " denied at\n" + Logger.dumpStack());
         return false;
@@ -341,7 +446,15 @@ final class BDJSecurityManager extends SecurityManager {
         }
 
         final String path = origPath;
-        String cpath = (String)AccessController.doPrivileged(new PrivilegedAction() {
+        String cpath;
+        synchronized (grantCache) {
+            cpath = (String)canonCache.get(path);
+        }
+        if (cpath != null) {
+            return cpath + suffix;
+        }
+
+        cpath = (String)AccessController.doPrivileged(new PrivilegedAction() {
             public Object run() {
                 try {
                     return new File(path).getCanonicalPath();
@@ -354,6 +467,14 @@ final class BDJSecurityManager extends SecurityManager {
         if (cpath == null) {
             throw new SecurityException("cant canonicalize " + path);
         }
+        if (!isWritable(cpath)) {
+            synchronized (grantCache) {
+                if (canonCache.size() >= MAX_CACHE_SIZE) {
+                    canonCache.clear();
+                }
+                canonCache.put(path, cpath);
+            }
+        }
         return cpath + suffix;
     }
 
@@ -55,7 +55,7 @@ public class BDJXletContext implements javax.tv.xlet.XletContext, javax.microedi
                                               this);
 
         callbackQueue  = BDJActionQueue.create(this.threadGroup, "CallbackQueue");
-        mediaQueue     = BDJActionQueue.create(this.threadGroup, "MediaQueue");
+        mediaQueue     = BDJActionQueue.create(this.threadGroup, "MediaQueue", MEDIA_QUEUE_CAPACITY);
         userEventQueue = BDJActionQueue.create(this.threadGroup, "UserEventQueue");
 
         mountHomeDir(entry);
@@ -249,9 +249,17 @@ public class BDJXletContext implements javax.tv.xlet.XletContext, javax.microedi
                 cnt++;
             }
         }
-        if (!released) {
-            // callbackQueue, userEventQueue, mediaQueue
-            cnt += 3;
+        /* queue threads are started on demand: count only running threads */
+        synchronized (cbLock) {
+            if (callbackQueue != null && callbackQueue.isThreadAlive()) {
+                cnt++;
+            }
+            if (userEventQueue != null && userEventQueue.isThreadAlive()) {
+                cnt++;
+            }
+            if (mediaQueue != null && mediaQueue.isThreadAlive()) {
+                cnt++;
+            }
         }
         return cnt;
     }
@@ -327,15 +335,16 @@ public class BDJXletContext implements javax.tv.xlet.XletContext, javax.microedi
      * Ixc
      */
 
-    protected void addIxcThread(Thread thread) {
-        synchronized (ixcThreads) {
-            ixcThreads.addLast(thread);
+    /* IXC calls made from this context, executed in callee context */
+    protected void addIxcCall(IxcExecutor.Call call) {
+        synchronized (ixcCalls) {
+            ixcCalls.addLast(call);
         }
     }
 
-    protected void removeIxcThread(Thread thread) {
-        synchronized (ixcThreads) {
-            ixcThreads.remove(thread);
+    protected void removeIxcCall(IxcExecutor.Call call) {
+        synchronized (ixcCalls) {
+            ixcCalls.remove(call);
         }
     }
 
@@ -369,18 +378,46 @@ public class BDJXletContext implements javax.tv.xlet.XletContext, javax.microedi
         } catch (InterruptedException e) { }
     }
 
-    private void stopIxcThreads() {
-        while (true) {
-            Thread thread;
-            synchronized (ixcThreads) {
-                if (ixcThreads.isEmpty()) {
-                    break;
-                }
-                thread = (Thread)ixcThreads.removeFirst();
+    /* executor for IXC calls to this context */
+    protected IxcExecutor getIxcExecutor() {
+        synchronized (ixcCalls) {
+            if (ixcExecutor == null) {
+                ixcExecutor = new IxcExecutor(this);
             }
-            logger.info("Stopping remote thread " + thread);
-            stopThread(thread, 1000, "Ixc");
-            removeIxcThread(thread);
+            return ixcExecutor;
+        }
+    }
+
+    /* called from BDJAppProxy before waiting for Xlet threads to terminate */
+    protected void releaseIxcThreads() {
+        IxcExecutor executor;
+        synchronized (ixcCalls) {
+            executor = ixcExecutor;
+        }
+        if (executor != null) {
+            executor.releaseIdleThreads();
+        }
+    }
+
+    private void shutdownIxcExecutor() {
+        IxcExecutor executor;
+        synchronized (ixcCalls) {
+            executor = ixcExecutor;
+            ixcExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void stopIxcCalls() {
+        Object[] calls;
+        synchronized (ixcCalls) {
+            calls = ixcCalls.toArray();
+        }
+        /* calls are removed from list when they are done */
+        for (int i = 0; i < calls.length; i++) {
+            ((IxcExecutor.Call)calls[i]).stop(1000);
         }
     }
 
@@ -457,13 +494,17 @@ public class BDJXletContext implements javax.tv.xlet.XletContext, javax.microedi
         // Release as much resources as possible while running in Xlet context.
 
         org.dvb.io.ixc.IxcRegistry.unbindAll(this);
+        javax.tv.util.TVTimerImpl.cancelAll(this);
 
         closeSockets();
         removeAllFAA();
-        stopIxcThreads();
+        stopIxcCalls();
+        shutdownIxcExecutor();
 
         defaultLooks.clear();
 
+        java.awt.BDJHelper.releaseImages(this);
+
         if (sceneFactory != null) {
             sceneFactory.dispose();
             sceneFactory = null;
@@ -488,6 +529,9 @@ public class BDJXletContext implements javax.tv.xlet.XletContext, javax.microedi
 
         threadGroup.stopAll(1000);
 
+        logger.info(loader.getStatistics());
+        loader.closeJarIndex();
+
         try {
             Method m;
             m = loader.getClass().getMethod("close", new Class[0]);
@@ -525,12 +569,16 @@ public class BDJXletContext implements javax.tv.xlet.XletContext, javax.microedi
     private EventQueue eventQueue = null;
     private HSceneFactory sceneFactory = null;
     private BDJThreadGroup threadGroup = null;
-    private LinkedList ixcThreads = new LinkedList();
+    private LinkedList ixcCalls = new LinkedList();
+    private IxcExecutor ixcExecutor = null;
     private LinkedList faaList = new LinkedList();
     private BDJSockets sockets = new BDJSockets();
     private HashMap defaultLooks = new HashMap();
     private BDJActionQueue callbackQueue;
     private BDJActionQueue userEventQueue;
     private BDJActionQueue mediaQueue;
+
+    /* pending media events before redundant events are coalesced */
+    private static final int MEDIA_QUEUE_CAPACITY = 64;
     private static final Logger logger = Logger.getLogger(BDJXletContext.class.getName());
 }
@@ -0,0 +1,274 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedAction;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/*
+ * Cache of class files repaired by BDJClassFileTransformer.
+ *
+ * Repaired class is keyed by SHA-1 of the original class file.
+ * Repaired classes are kept in memory for the disc session (xlet restarts),
+ * and stored to PersistentCache (when enabled) for next sessions.
+ * Stored classes are loaded without re-checking, so they are trusted only
+ * because PersistentCache refuses roots that are not private to the user or
+ * that overlap Xlet writable storage.
+ *
+ * Optionally, JAR files can be scanned for broken classes in background
+ * when class loader is created (system property org.videolan.classprescan=YES).
+ */
+
+class ClassRepairCache {
+
+    private static final String CACHE_DIR = "classes";
+
+    private static final Logger logger = Logger.getLogger(ClassRepairCache.class.getName());
+
+    private static final boolean prescan = "YES".equals(System.getProperty("org.videolan.classprescan"));
+
+    private static final Object lock = new Object();
+    private static final HashMap classes = new HashMap();       /* hash -> repaired class file */
+    private static final LinkedList unsaved = new LinkedList(); /* hashes not yet stored to persistent cache */
+    private static final HashSet scannedJars = new HashSet();
+    private static final LinkedList scanThreads = new LinkedList();
+    private static int session = 0;                             /* incremented at init and shutdown */
+    private static long hits = 0;
+    private static long misses = 0;
+
+    /*
+     * Load repaired classes of current disc. Called from Libbluray.init().
+     */
+    protected static void init() {
+        /* empty if persistent cache is disabled or root is not trusted */
+        Map stored = PersistentCache.loadData(CACHE_DIR);
+        synchronized (lock) {
+            session++;
+            classes.clear();
+            unsaved.clear();
+            scannedJars.clear();
+            hits = misses = 0;
+            classes.putAll(stored);
+        }
+        if (!stored.isEmpty()) {
+            logger.info("Loaded " + stored.size() + " repaired classes from persistent cache");
+        }
+    }
+
+    protected static void shutdown() {
+        Object[] threads;
+        synchronized (lock) {
+            /* late results of prescan threads are dropped */
+            session++;
+            threads = scanThreads.toArray();
+            scanThreads.clear();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            Thread t = (Thread)threads[i];
+            t.interrupt();
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                logger.error("" + e);
+            }
+            if (t.isAlive()) {
+                logger.error("Class prescan thread did not terminate");
+            }
+        }
+
+        flush();
+        synchronized (lock) {
+            logger.info("repaired classes: " + classes.size() + ", " + hits + " hits, " + misses + " misses");
+            classes.clear();
+        }
+    }
+
+    /*
+     * Repair broken class file.
+     * Returns cached result if the same class has been repaired before.
+     */
+    protected static byte[] repair(byte[] b) {
+        return repair(b, -1);
+    }
+
+    /* scanSession: session of calling prescan thread, -1 if called from class loader */
+    private static byte[] repair(byte[] b, int scanSession) {
+        String hash = hash(b);
+
+        if (hash != null) {
+            synchronized (lock) {
+                byte[] r = (byte[])classes.get(hash);
+                if (r != null) {
+                    hits++;
+                    return r;
+                }
+                misses++;
+            }
+        }
+
+        byte[] r = new BDJClassFileTransformer().strip(b, 0, b.length);
+
+        if (hash != null) {
+            synchronized (lock) {
+                if (scanSession >= 0 && scanSession != session) {
+                    return r;
+                }
+                if (classes.put(hash, r) == null) {
+                    unsaved.add(hash);
+                }
+            }
+            /* Xlet threads can't write to persistent cache */
+            if (BDJXletContext.getCurrentContext() == null) {
+                flush();
+            }
+        }
+
+        return r;
+    }
+
+    /*
+     * Scan JAR file for broken classes in background
+     */
+    protected static void prescan(final String jarPath) {
+        if (!prescan) {
+            return;
+        }
+        final int scanSession;
+        synchronized (lock) {
+            if (!scannedJars.add(jarPath)) {
+                return;
+            }
+            scanSession = session;
+        }
+
+        /* run outside of xlet thread group (BD-J core context) */
+        Thread t = (Thread)AccessController.doPrivileged(
+            new PrivilegedAction() {
+                public Object run() {
+                    ThreadGroup group = Thread.currentThread().getThreadGroup();
+                    while (group.getParent() != null) {
+                        group = group.getParent();
+                    }
+                    return new Thread(group, new Runnable() {
+                            public void run() {
+                                try {
+                                    scanJar(jarPath, scanSession);
+                                } finally {
+                                    synchronized (lock) {
+                                        scanThreads.remove(Thread.currentThread());
+                                    }
+                                }
+                            }
+                        }, "BD-J class prescan");
+                }
+            });
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        synchronized (lock) {
+            if (scanSession != session) {
+                return;
+            }
+            scanThreads.add(t);
+        }
+        t.start();
+    }
+
+    /*
+     * internal
+     */
+
+    private static boolean isCurrent(int scanSession) {
+        synchronized (lock) {
+            return scanSession == session && !Thread.currentThread().isInterrupted();
+        }
+    }
+
+    private static void scanJar(String jarPath, int scanSession) {
+        long start = System.currentTimeMillis();
+        int broken = 0;
+        JarIndex index = null;
+        try {
+            BDJClassFileTransformer transformer = new BDJClassFileTransformer();
+            index = new JarIndex(jarPath);
+            Iterator it = index.entries();
+            while (it.hasNext() && isCurrent(scanSession)) {
+                JarIndex.Entry entry = (JarIndex.Entry)it.next();
+                if (!entry.name.endsWith(".class")) {
+                    continue;
+                }
+                byte[] b = index.read(entry);
+                if (transformer.hasBrokenDebugInfo(b)) {
+                    logger.info("prescan: repairing " + entry.name);
+                    repair(b, scanSession);
+                    broken++;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error scanning " + jarPath + ": " + e);
+        } finally {
+            if (index != null) {
+                index.close();
+            }
+        }
+
+        logger.info("Scanned " + jarPath + ": " + broken + " broken classes (" +
+                    (System.currentTimeMillis() - start) + " ms)");
+    }
+
+    /* store new entries to persistent cache. Called from BD-J core threads. */
+    private static void flush() {
+        while (true) {
+            String hash;
+            byte[] data;
+            synchronized (lock) {
+                if (unsaved.isEmpty()) {
+                    return;
+                }
+                hash = (String)unsaved.removeFirst();
+                data = (byte[])classes.get(hash);
+            }
+            if (data != null) {
+                PersistentCache.storeData(CACHE_DIR + "/" + hash, data);
+            }
+        }
+    }
+
+    private static String hash(byte[] b) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(b);
+            StringBuffer sb = new StringBuffer(digest.length * 2);
+            for (int i = 0; i < digest.length; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("" + e);
+            return null;
+        }
+    }
+}
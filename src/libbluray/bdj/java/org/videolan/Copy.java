@@ -26,9 +26,55 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.WeakHashMap;
 
 public class Copy {
 
+    /*
+     * Immutable classes loaded by bootstrap class loader.
+     * Instances can be shared between xlets.
+     */
+    private static final Class[] immutableClasses = {
+        String.class,
+        Boolean.class, Character.class,
+        Byte.class, Short.class, Integer.class, Long.class,
+        Float.class, Double.class,
+    };
+
+    private static boolean isImmutableClass(Class c) {
+        for (int i = 0; i < immutableClasses.length; i++) {
+            if (c == immutableClasses[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Copy object to another xlet.
+     * Immutable objects are shared, arrays of primitives and immutables are
+     * copied directly. Other objects are serialized.
+     */
+    public static Serializable copy(ClassLoader cl, Serializable obj) throws IOException, ClassNotFoundException {
+        Class c = obj.getClass();
+        if (isImmutableClass(c)) {
+            return obj;
+        }
+        if (c.isArray()) {
+            Class componentType = c.getComponentType();
+            if (componentType.isPrimitive() || isImmutableClass(componentType)) {
+                int length = Array.getLength(obj);
+                Object result = Array.newInstance(componentType, length);
+                System.arraycopy(obj, 0, result, 0, length);
+                return (Serializable)result;
+            }
+        }
+        return deepCopy(cl, obj);
+    }
+
     public static Serializable deepCopy(ClassLoader cl, Serializable obj) throws IOException, ClassNotFoundException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         ObjectOutputStream oos = new ObjectOutputStream(bos);
@@ -46,6 +92,30 @@ public class Copy {
         return s;
     }
 
+    /* resolved classes, ClassLoader -> (class name -> WeakReference(Class)) */
+    private static final WeakHashMap resolvedClasses = new WeakHashMap();
+
+    private static Class resolveCached(String name, ClassLoader cl) throws ClassNotFoundException {
+        HashMap classes;
+        synchronized (resolvedClasses) {
+            classes = (HashMap)resolvedClasses.get(cl);
+            if (classes == null) {
+                classes = new HashMap();
+                resolvedClasses.put(cl, classes);
+            }
+        }
+
+        synchronized (classes) {
+            WeakReference ref = (WeakReference)classes.get(name);
+            Class c = ref == null ? null : (Class)ref.get();
+            if (c == null) {
+                c = Class.forName(name, false, cl);
+                classes.put(name, new WeakReference(c));
+            }
+            return c;
+        }
+    }
+
     /* ObjectInputStream with xlet class loader */
     private static class ClObjectInputStream extends ObjectInputStream {
         private ClassLoader classLoader = null;
@@ -57,7 +127,7 @@ public class Copy {
 
         protected Class resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
             try {
-                return Class.forName(desc.getName(), false, classLoader);
+                return resolveCached(desc.getName(), classLoader);
             } catch (ClassNotFoundException e) {
                 Class cl = super.resolveClass(desc);
                 if (cl != null) {
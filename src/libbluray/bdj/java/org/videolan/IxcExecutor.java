@@ -0,0 +1,276 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+import java.rmi.RemoteException;
+import java.util.LinkedList;
+
+/*
+ * Executes IXC remote calls in callee Xlet thread group.
+ *
+ * Threads are re-used between calls. A new thread is created when there
+ * is no idle thread, so nested / re-entrant calls can not deadlock.
+ * While executing a call, the call is registered to caller context.
+ * When caller is destroyed, the call is stopped; the thread executing it
+ * is interrupted (and killed) only if it is still running that call.
+ */
+
+class IxcExecutor {
+
+    /* max. number of idle threads kept in pool */
+    private static final int  MAX_IDLE_THREADS = 4;
+    private static final long IDLE_TIMEOUT     = 10000;
+
+    static final class Call {
+        Call(IxcExecutor executor, Runnable task, BDJXletContext callerContext) {
+            this.executor = executor;
+            this.task = task;
+            this.callerContext = callerContext;
+            this.queueTime = System.nanoTime();
+        }
+
+        /* called from caller context cleanup */
+        void stop(int timeout) {
+            executor.stopCall(this, timeout);
+        }
+
+        final IxcExecutor    executor;
+        final Runnable       task;
+        final BDJXletContext callerContext;
+        final long           queueTime;
+
+        /* protected by executor */
+        Thread               thread = null;
+        boolean              stopping = false;
+        boolean              done = false;
+    }
+
+    private final class Worker implements Runnable {
+        Worker(Call call) {
+            this.call = call;
+        }
+
+        /* protected by IxcExecutor.this */
+        Call call;
+        boolean exit = false;
+
+        public void run() {
+            Thread thread = Thread.currentThread();
+            try {
+                while (true) {
+                    Call c;
+                    synchronized (IxcExecutor.this) {
+                        long deadline = System.currentTimeMillis() + IDLE_TIMEOUT;
+                        while (call == null && !shutdown && !exit) {
+                            long left = deadline - System.currentTimeMillis();
+                            if (left <= 0) {
+                                return;
+                            }
+                            try {
+                                IxcExecutor.this.wait(left);
+                            } catch (InterruptedException e) {
+                                /* being stopped */
+                                if (call == null) {
+                                    return;
+                                }
+                            }
+                        }
+                        if (call == null) {
+                            return;
+                        }
+                        c = call;
+                        c.thread = thread;
+                    }
+
+                    execute(c);
+
+                    synchronized (IxcExecutor.this) {
+                        call = null;
+                        /* do not re-use thread that was bound to a destroyed caller */
+                        if (shutdown || c.stopping || thread.isInterrupted() || idle.size() >= MAX_IDLE_THREADS) {
+                            return;
+                        }
+                        idle.addLast(this);
+                    }
+                }
+            } finally {
+                synchronized (IxcExecutor.this) {
+                    idle.remove(this);
+                    numThreads--;
+                    Call c = call;
+                    call = null;
+                    if (c != null && !c.done) {
+                        c.done = true;
+                        IxcExecutor.this.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private final BDJXletContext calleeContext;
+    private final LinkedList idle = new LinkedList();
+    private int     numThreads = 0;
+    private boolean shutdown = false;
+
+    /* statistics */
+    private long calls = 0;
+    private long threadsCreated = 0;
+    private long totalWait = 0;
+    private long maxWait = 0;
+    private long totalExec = 0;
+    private long maxExec = 0;
+
+    private static final Logger logger = Logger.getLogger(IxcExecutor.class.getName());
+
+    IxcExecutor(BDJXletContext calleeContext) {
+        this.calleeContext = calleeContext;
+    }
+
+    /*
+     * Run task in callee context. Blocks until task has been executed
+     * (or executing thread has been stopped).
+     */
+    void invoke(Runnable task, BDJXletContext callerContext) throws RemoteException, InterruptedException {
+        Call call = new Call(this, task, callerContext);
+
+        synchronized (this) {
+            if (shutdown) {
+                throw new RemoteException("callee has been destroyed");
+            }
+
+            if (!idle.isEmpty()) {
+                Worker w = (Worker)idle.removeLast();
+                w.call = call;
+                notifyAll();
+            } else {
+                ThreadGroup group = calleeContext.getThreadGroup();
+                if (group == null) {
+                    throw new RemoteException("callee has been destroyed");
+                }
+                Thread t = new Thread(group, new Worker(call), "Ixc Remote thread " + threadsCreated);
+                t.setDaemon(true);
+                numThreads++;
+                threadsCreated++;
+                t.start();
+            }
+
+            while (!call.done) {
+                wait();
+            }
+        }
+    }
+
+    /* let idle threads exit now (callee is being destroyed). New calls start new threads. */
+    synchronized void releaseIdleThreads() {
+        while (!idle.isEmpty()) {
+            ((Worker)idle.removeFirst()).exit = true;
+        }
+        notifyAll();
+    }
+
+    void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+        logger.info(getStatistics());
+    }
+
+    synchronized String getStatistics() {
+        return "IXC calls to " + calleeContext + ": " + calls + " calls, " +
+            threadsCreated + " threads created, " + numThreads + " threads alive, " +
+            "queue wait avg " + (calls > 0 ? totalWait / calls / 1000 : 0) + " us / max " + maxWait / 1000 + " us, " +
+            "execution avg " + (calls > 0 ? totalExec / calls / 1000 : 0) + " us / max " + maxExec / 1000 + " us";
+    }
+
+    /*
+     * Stop call executed for destroyed caller.
+     * Wait until the call has completed; interrupt and finally kill the
+     * executing thread only while it is still running this call.
+     */
+    private void stopCall(Call c, int timeout) {
+        synchronized (this) {
+            c.stopping = true;
+            if (waitCall(c, timeout)) {
+                return;
+            }
+            if (c.thread != null) {
+                logger.info("Stopping remote call in " + c.thread);
+                c.thread.interrupt();
+                if (waitCall(c, 200)) {
+                    return;
+                }
+                logger.error("killing Ixc thread " + c.thread);
+                PortingHelper.stopThread(c.thread);
+            }
+            while (!c.done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /* called with lock held */
+    private boolean waitCall(Call c, int timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!c.done) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                return c.done;
+            }
+        }
+        return true;
+    }
+
+    private void execute(Call c) {
+        long start = System.nanoTime();
+
+        c.callerContext.addIxcCall(c);
+        try {
+            c.task.run();
+        } finally {
+            long end = System.nanoTime();
+            synchronized (this) {
+                long waited = start - c.queueTime;
+                long executed = end - start;
+                calls++;
+                totalWait += waited;
+                totalExec += executed;
+                maxWait = Math.max(maxWait, waited);
+                maxExec = Math.max(maxExec, executed);
+
+                c.done = true;
+                notifyAll();
+            }
+
+            /* unregister only after call is done: caller cleanup can not miss it */
+            c.callerContext.removeIxcCall(c);
+        }
+    }
+}
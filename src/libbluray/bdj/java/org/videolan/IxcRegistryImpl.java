@@ -63,7 +63,6 @@ public class IxcRegistryImpl {
             logger.error("remote context is null");
         }
 
-        InvocationHandler handler = new RemoteObjectInvocationHandler(remoteObj);
         ClassLoader cl = ((BDJXletContext)toContext).getClassLoader();
 
         ArrayList list = new ArrayList();
@@ -84,6 +83,7 @@ public class IxcRegistryImpl {
         Class[] ifs = (Class[])FilteredList.toArray(new Class[0]);
 
         if (ifs != null && ifs.length != 0) {
+            InvocationHandler handler = new RemoteObjectInvocationHandler(remoteObj, (BDJXletContext)toContext, ifs);
             return (Remote)Proxy.newProxyInstance(cl, ifs, handler);
         }
         return null;
@@ -119,12 +119,9 @@ public class IxcRegistryImpl {
             }
             return wrapImportedObject(wrappedObj, toContext);
         }
-        if (obj.getClass().isPrimitive() || obj.getClass().equals(Void.TYPE)) {
-            return obj;
-        }
         if (obj instanceof Serializable) {
             try {
-                return Copy.deepCopy(toContext.getClassLoader(), (Serializable)obj);
+                return Copy.copy(toContext.getClassLoader(), (Serializable)obj);
             } catch (Exception e) {
                 Debug("wrapOrCopy: failed in deepCopy:\n" + Logger.dumpStack(e));
                 throw new RemoteException("serialization/deserialization failed", e);
@@ -200,19 +197,126 @@ public class IxcRegistryImpl {
         }
     }
 
+    /*
+     * Find method of callee class loader matching method of caller class loader
+     */
+    private static Method findMethodInCallee(Method method, BDJXletContext calleeContext) {
+        try {
+            Class c = method.getDeclaringClass();
+            Class calleeClass = calleeContext.getClassLoader().loadClass(c.getName());
+            if (calleeClass == c) {
+                return method;
+            }
+
+            Class[] paramsInCaller = method.getParameterTypes();
+            Method[] methodsInCallee = calleeClass.getDeclaredMethods();
+
+            for (int i = 0; i < methodsInCallee.length; i++) {
+                Method m = methodsInCallee[i];
+                if (!m.getName().equals(method.getName())) {
+                    continue;
+                }
+                Class[] paramsInCallee = m.getParameterTypes();
+                if (paramsInCallee.length != paramsInCaller.length) {
+                    continue;
+                }
+                int j;
+                for (j = 0; j < paramsInCaller.length; j++) {
+                    if (!paramsInCaller[j].getName().equals(paramsInCallee[j].getName())) {
+                        break;
+                    }
+                }
+                if (j == paramsInCaller.length) {
+                    TRACE("method in callee: " + m);
+                    return m;
+                }
+            }
+            TRACE("can't find method in callee");
+        } catch (SecurityException e) {
+            TRACE("can't find method in callee: " + e + "\n" + Logger.dumpStack(e));
+        } catch (ClassNotFoundException e) {
+            TRACE("can't find method in callee: " + e + "\n" + Logger.dumpStack(e));
+        }
+
+        return null;
+    }
+
     private class RemoteObjectInvocationHandler implements InvocationHandler {
         public IxcRegistryImpl.WrappedRemoteObj remoteObj = null;
 
-        public RemoteObjectInvocationHandler(IxcRegistryImpl.WrappedRemoteObj remoteObj) {
+        /* context the proxy was created for */
+        private final BDJXletContext importContext;
+
+        /* caller Method -> callee Method. null when invalidated. */
+        private HashMap methodTable;
+
+        public RemoteObjectInvocationHandler(IxcRegistryImpl.WrappedRemoteObj remoteObj,
+                                             BDJXletContext importContext, final Class[] ifs) {
             TRACE("RemoteInvocationHandler created for " + remoteObj);
             this.remoteObj = remoteObj;
+            this.importContext = importContext;
+
+            methodTable = (HashMap)AccessController.doPrivileged(
+                new PrivilegedAction() {
+                    public Object run() {
+                        return createMethodTable(ifs);
+                    }
+                });
+        }
+
+        private HashMap createMethodTable(Class[] ifs) {
+            HashMap table = new HashMap();
+            if (remoteObj.context == null || remoteObj.context.getClassLoader() == null) {
+                return table;
+            }
+            for (int i = 0; i < ifs.length; i++) {
+                Method[] methods = ifs[i].getMethods();
+                for (int j = 0; j < methods.length; j++) {
+                    if (!table.containsKey(methods[j])) {
+                        Method m = findMethodInCallee(methods[j], remoteObj.context);
+                        if (m != null) {
+                            table.put(methods[j], m);
+                        }
+                    }
+                }
+            }
+            return table;
+        }
+
+        private synchronized void invalidate() {
+            methodTable = null;
+        }
+
+        private Method lookupMethod(final Method method, BDJXletContext callerContext) {
+            if (callerContext == importContext) {
+                synchronized (this) {
+                    if (methodTable != null) {
+                        Method m = (Method)methodTable.get(method);
+                        if (m != null) {
+                            return m;
+                        }
+                    }
+                }
+            }
+
+            /* not in table (java.lang.Object methods, proxy used from another context) */
+            return (Method)AccessController.doPrivileged(
+                new PrivilegedAction() {
+                    public Object run() {
+                        return findMethodInCallee(method, remoteObj.context);
+                    }
+                });
         }
 
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
             if (null == remoteObj.context || remoteObj.context.isReleased()) {
                 Debug("invoke(): callee has been destroyed");
+                invalidate();
                 throw new RemoteException("callee has been destroyed");
             }
+            if (importContext.isReleased()) {
+                invalidate();
+            }
 
             TRACE("RemoteInvocationHandler called for " + remoteObj);
 
@@ -232,13 +336,7 @@ public class IxcRegistryImpl {
                 throw new RemoteException("caller has been destroyed");
             }
 
-            Thread remoteThread = new Thread(remoteObj.context.getThreadGroup(), remoteMethod, "Ixc Remote thread " + method);
-
-            remoteMethod.callerContext.addIxcThread(remoteThread);
-            remoteThread.setDaemon(false);
-            remoteThread.start();
-            remoteThread.join();
-            remoteMethod.callerContext.removeIxcThread(remoteThread);
+            remoteObj.context.getIxcExecutor().invoke(remoteMethod, remoteMethod.callerContext);
 
             if (!remoteMethod.finished) {
                 Debug("invoke(): calling xlet destroyed during remote execution");
@@ -281,13 +379,7 @@ public class IxcRegistryImpl {
                 }
                 calleeContext = context;
 
-                //methodInCallee = findMethodInCallee(method);
-                methodInCallee = (Method)AccessController.doPrivileged(
-                    new PrivilegedAction() {
-                        public Object run() {
-                            return findMethodInCallee(method);
-                        }
-                    });
+                methodInCallee = lookupMethod(method, callerContext);
 
                 if (null != args) {
                     argsInCallee = new Object[args.length];
@@ -324,29 +416,6 @@ public class IxcRegistryImpl {
                     finished = true;
                 }
             }
-
-            private Method findMethodInCallee(Method method) {
-                try {
-                    Class c = method.getDeclaringClass();
-                    Method[] methodsInCaller = callerContext.getClassLoader().loadClass(c.getName()).getDeclaredMethods();
-                    Method[] methodsInCallee = calleeContext.getClassLoader().loadClass(c.getName()).getDeclaredMethods();
-
-                    for (int i = 0; i < methodsInCaller.length; i++) {
-                        if (methodsInCaller[i].equals(method)) {
-                            Method result = methodsInCallee[i];
-                            TRACE("method in callee: " + result);
-                            return result;
-                        }
-                    }
-                    TRACE("can't find method in callee");
-                } catch (SecurityException e) {
-                    TRACE("can't find method in callee: " + e + "\n" + Logger.dumpStack(e));
-                } catch (ClassNotFoundException e) {
-                    TRACE("can't find method in callee: " + e + "\n" + Logger.dumpStack(e));
-                }
-
-                return null;
-            }
         }
     }
 
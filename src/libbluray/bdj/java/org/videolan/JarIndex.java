@@ -0,0 +1,366 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * Index of JAR file contents, built from zip central directory.
+ *
+ * Entry data is read only when the entry is extracted.
+ * Stored (uncompressed) entries are copied directly from the JAR file.
+ */
+
+class JarIndex {
+
+    static final class Entry {
+        Entry(String name, int method, long compressedSize, long size, long headerOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.headerOffset = headerOffset;
+        }
+
+        final String name;
+        final int    method;
+        final long   compressedSize;
+        final long   size;
+        final long   headerOffset;
+    }
+
+    private static final int END_SIGNATURE     = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE   = 0x04034b50;
+
+    private static final int END_SIZE     = 22;
+    private static final int CENTRAL_SIZE = 46;
+    private static final int LOCAL_SIZE   = 30;
+
+    private static final int STORED   = 0;
+    private static final int DEFLATED = 8;
+
+    private RandomAccessFile file;
+    private final HashMap entries = new HashMap();   /* file name -> Entry */
+    private final HashMap dirs = new HashMap();      /* directory name ("" for root) -> ArrayList of child names */
+
+    /*
+     * Read JAR central directory.
+     * Throws IOException if the file can not be indexed (ex. zip64 or unsupported compression).
+     */
+    JarIndex(String path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        try {
+            readCentralDirectory();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    synchronized void close() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+            }
+            file = null;
+        }
+    }
+
+    /* find file entry. Returns null for directories and unknown names. */
+    Entry getEntry(String name) {
+        return (Entry)entries.get(name);
+    }
+
+    boolean isDirectory(String name) {
+        return dirs.get(name) != null;
+    }
+
+    /* list directory ("" for root). Returns null if directory does not exist. */
+    String[] list(String name) {
+        ArrayList children = (ArrayList)dirs.get(name);
+        if (children == null) {
+            return null;
+        }
+        return (String[])children.toArray(new String[children.size()]);
+    }
+
+    /* all file entries */
+    Iterator entries() {
+        return entries.values().iterator();
+    }
+
+    /* all directory names */
+    Iterator directories() {
+        return dirs.keySet().iterator();
+    }
+
+    /*
+     * Read entry to memory
+     */
+    byte[] read(Entry entry) throws IOException {
+        if (entry.size > Integer.MAX_VALUE || entry.compressedSize > Integer.MAX_VALUE) {
+            throw new IOException("entry too large: " + entry.name);
+        }
+
+        /* Inflater in nowrap mode may need one extra byte */
+        byte[] data = new byte[(int)entry.compressedSize + (entry.method == DEFLATED ? 1 : 0)];
+        synchronized (this) {
+            file.seek(dataOffset(entry));
+            file.readFully(data, 0, (int)entry.compressedSize);
+        }
+
+        if (entry.method == STORED) {
+            return data;
+        }
+
+        byte[] result = new byte[(int)entry.size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            int pos = 0;
+            while (pos < result.length) {
+                int length = inflater.inflate(result, pos, result.length - pos);
+                if (length == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                pos += length;
+            }
+            if (pos != result.length) {
+                throw new IOException("truncated entry " + entry.name);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupted entry " + entry.name + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    /*
+     * Extract entry to file
+     */
+    void extract(Entry entry, File out) throws IOException {
+        long dataOffset;
+        synchronized (this) {
+            dataOffset = dataOffset(entry);
+        }
+
+        Inflater inflater = null;
+        InputStream in = new RangeInputStream(dataOffset, entry.compressedSize, entry.method == DEFLATED);
+        if (entry.method == DEFLATED) {
+            inflater = new Inflater(true);
+            in = new InflaterInputStream(in, inflater);
+        }
+
+        OutputStream os = new FileOutputStream(out);
+        try {
+            byte[] buffer = new byte[32 * 1024];
+            long left = entry.size;
+            int length;
+            while (left > 0 && (length = in.read(buffer, 0, (int)Math.min(buffer.length, left))) > 0) {
+                os.write(buffer, 0, length);
+                left -= length;
+            }
+            if (left != 0) {
+                throw new IOException("truncated entry " + entry.name);
+            }
+        } finally {
+            os.close();
+            in.close();
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /*
+     * internal
+     */
+
+    /* called with lock held */
+    private long dataOffset(Entry entry) throws IOException {
+        if (file == null) {
+            throw new IOException("JAR file closed");
+        }
+        byte[] header = new byte[LOCAL_SIZE];
+        file.seek(entry.headerOffset);
+        file.readFully(header);
+        if (getInt(header, 0) != LOCAL_SIGNATURE) {
+            throw new IOException("invalid local header for " + entry.name);
+        }
+        return entry.headerOffset + LOCAL_SIZE + getShort(header, 26) + getShort(header, 28);
+    }
+
+    private static int getShort(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+    }
+
+    private static int getInt(byte[] b, int off) {
+        return getShort(b, off) | (getShort(b, off + 2) << 16);
+    }
+
+    private static long getUInt(byte[] b, int off) {
+        return getInt(b, off) & 0xffffffffL;
+    }
+
+    private void readCentralDirectory() throws IOException {
+
+        /* locate end of central directory record (followed by max. 64k comment) */
+        long length = file.length();
+        int tailSize = (int)Math.min(length, END_SIZE + 0xffff);
+        byte[] tail = new byte[tailSize];
+        file.seek(length - tailSize);
+        file.readFully(tail);
+
+        int end = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (getInt(tail, i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("zip end header not found");
+        }
+
+        int  count  = getShort(tail, end + 10);
+        long size   = getUInt(tail, end + 12);
+        long offset = getUInt(tail, end + 16);
+        if (count == 0xffff || size == 0xffffffffL || offset == 0xffffffffL) {
+            throw new IOException("zip64 not supported");
+        }
+        if (offset + size > length) {
+            throw new IOException("invalid central directory");
+        }
+
+        byte[] cd = new byte[(int)size];
+        file.seek(offset);
+        file.readFully(cd);
+
+        dirs.put("", new ArrayList());
+
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_SIZE > cd.length || getInt(cd, pos) != CENTRAL_SIGNATURE) {
+                throw new IOException("invalid central directory entry");
+            }
+            int  method       = getShort(cd, pos + 10);
+            long csize        = getUInt(cd, pos + 20);
+            long usize        = getUInt(cd, pos + 24);
+            int  nameLength   = getShort(cd, pos + 28);
+            int  extraLength  = getShort(cd, pos + 30);
+            int  commentLength= getShort(cd, pos + 32);
+            long headerOffset = getUInt(cd, pos + 42);
+
+            String name = new String(cd, pos + CENTRAL_SIZE, nameLength, "UTF-8");
+            pos += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+
+            if (name.indexOf("..") >= 0 || name.startsWith("/")) {
+                throw new IOException("invalid entry name " + name);
+            }
+
+            if (name.endsWith("/")) {
+                addDirectory(name.substring(0, name.length() - 1));
+                continue;
+            }
+
+            if (method != STORED && method != DEFLATED) {
+                throw new IOException("unsupported compression method " + method + " (" + name + ")");
+            }
+            if (csize == 0xffffffffL || usize == 0xffffffffL || headerOffset == 0xffffffffL) {
+                throw new IOException("zip64 not supported");
+            }
+
+            entries.put(name, new Entry(name, method, csize, usize, headerOffset));
+            addChild(name);
+        }
+    }
+
+    private void addDirectory(String name) {
+        if (name.length() < 1 || dirs.get(name) != null) {
+            return;
+        }
+        dirs.put(name, new ArrayList());
+        addChild(name);
+    }
+
+    private void addChild(String name) {
+        int slash = name.lastIndexOf('/');
+        String parent = slash < 0 ? "" : name.substring(0, slash);
+        addDirectory(parent);
+        ((ArrayList)dirs.get(parent)).add(name.substring(slash + 1));
+    }
+
+    /* read range of JAR file */
+    private class RangeInputStream extends InputStream {
+        RangeInputStream(long offset, long length, boolean padding) {
+            this.pos = offset;
+            this.left = length;
+            this.padding = padding;
+        }
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? (b[0] & 0xff) : -1;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (left <= 0) {
+                /* Inflater in nowrap mode may need one extra byte */
+                if (padding && len > 0) {
+                    padding = false;
+                    b[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+            len = (int)Math.min(len, left);
+            synchronized (JarIndex.this) {
+                if (file == null) {
+                    throw new IOException("JAR file closed");
+                }
+                file.seek(pos);
+                len = file.read(b, off, len);
+            }
+            if (len > 0) {
+                pos += len;
+                left -= len;
+            }
+            return len;
+        }
+
+        private long pos;
+        private long left;
+        private boolean padding;
+    }
+}
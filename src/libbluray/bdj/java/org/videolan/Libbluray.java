@@ -33,6 +33,7 @@ import javax.tv.service.SIManager;
 import javax.tv.service.SIManagerImpl;
 import javax.tv.service.selection.ServiceContextFactory;
 import javax.tv.service.selection.ServiceContextFactoryImpl;
+import javax.tv.util.TVTimerImpl;
 import org.bluray.bdplus.Status;
 import org.bluray.net.BDLocator;
 import org.bluray.system.RegisterAccess;
@@ -188,6 +189,7 @@ public class Libbluray {
                                String persistentRoot, String budaRoot) {
 
         initOnce();
+        Logger.init();
 
         /* set up directories */
 
@@ -225,6 +227,8 @@ public class Libbluray {
 
         Libbluray.nativePointer = nativePointer;
         DiscManager.getDiscManager().setCurrentDisc(discID);
+        PersistentCache.init(discID, persistentRoot, budaRoot);
+        ClassRepairCache.init();
 
         BDJActionManager.createInstance();
 
@@ -343,7 +347,12 @@ public class Libbluray {
         System.setProperty("bluray.network.connected", "YES");
 
         try {
-            System.setSecurityManager(new BDJSecurityManager(discRoot, persistentRoot, budaRoot));
+            BDJSecurityManager sm = new BDJSecurityManager(discRoot, persistentRoot, budaRoot);
+            String persistentCacheRoot = PersistentCache.getRoot();
+            if (persistentCacheRoot != null) {
+                sm.setPersistentCacheRoot(persistentCacheRoot);
+            }
+            System.setSecurityManager(sm);
         } catch (Exception ex) {
             System.err.println("System.setSecurityManager() failed: " + ex);
             throw new SecurityException("Failed initializing SecurityManager");
@@ -373,6 +382,7 @@ public class Libbluray {
             }
 
             MountManager.unmountAll();
+            ClassRepairCache.shutdown();
             GUIManager.shutdown();
             BDToolkit.shutdownDisc();
             BDFontMetrics.shutdown();
@@ -381,6 +391,7 @@ public class Libbluray {
             EventManager.shutdown();
             Status.shutdown();
             ServiceContextFactoryImpl.shutdown();
+            TVTimerImpl.shutdown();
             FontFactory.unloadDiscFonts();
             CacheDir.remove();
         } catch (Throwable e) {
@@ -396,6 +407,9 @@ public class Libbluray {
         classLoaderAdapter = null;
         loaderAdapter = null;
         booted = false;
+
+        /* flush log before native methods are unregistered */
+        Logger.shutdown();
     }
 
     /*
@@ -411,6 +425,11 @@ public class Libbluray {
         return cacheBdRomFileN(nativePointer, path, cachePath) == 0;
     }
 
+    /* size of file in BD-ROM, -1 if not found */
+    protected static long getBdRomFileSize(String path) {
+        return getBdRomFileSizeN(nativePointer, path);
+    }
+
     protected static void setUOMask(boolean menuCallMask, boolean titleSearchMask) {
         setUOMaskN(nativePointer, menuCallMask, titleSearchMask);
     }
@@ -628,6 +647,18 @@ public class Libbluray {
                        x0, y0, x1, y1);
     }
 
+    /* rects: numRects dirty rectangles as (x0, y0, x1, y1) */
+    public static void updateGraphic(int width, int height, int[] rgbArray,
+                                     int[] rects, int numRects) {
+        if (numRects == 1) {
+            updateGraphicN(nativePointer, width, height, rgbArray,
+                           rects[0], rects[1], rects[2], rects[3]);
+        } else if (numRects > 1) {
+            updateGraphicRectsN(nativePointer, width, height, rgbArray,
+                                rects, numRects);
+        }
+    }
+
     /*
      * Events from native side
      */
@@ -681,6 +712,11 @@ public class Libbluray {
         case BDJ_EVENT_STOP:
             return stopTitle(false);
 
+        case BDJ_EVENT_PTS:
+            VideoFrameClock.getInstance().setTime(param);
+            result = PlayerManager.getInstance().onEvent(event, param);
+            break;
+
         case BDJ_EVENT_CHAPTER:
         case BDJ_EVENT_MARK:
         case BDJ_EVENT_PLAYITEM:
@@ -690,7 +726,6 @@ public class Libbluray {
         case BDJ_EVENT_AUDIO_STREAM:
         case BDJ_EVENT_SECONDARY_STREAM:
         case BDJ_EVENT_END_OF_PLAYLIST:
-        case BDJ_EVENT_PTS:
         case BDJ_EVENT_UO_MASKED:
         case BDJ_EVENT_SEEK:
         case BDJ_EVENT_RATE:
@@ -808,10 +843,13 @@ public class Libbluray {
     private static native int readRegN(long np, int is_psr, int num);
     private static native int setVirtualPackageN(long np, String vpPath, boolean psrBackup);
     private static native int cacheBdRomFileN(long np, String path, String cachePath);
+    private static native long getBdRomFileSizeN(long np, String path);
     private static native String[] listBdFilesN(long np, String path, boolean onlyBdRom);
     private static native Bdjo getBdjoN(long np, String name);
     private static native void updateGraphicN(long np, int width, int height, int[] rgbArray,
                                               int x0, int y0, int x1, int y1);
+    private static native void updateGraphicRectsN(long np, int width, int height, int[] rgbArray,
+                                                   int[] rects, int numRects);
 
     private static long nativePointer = 0;
     private static Object titleInfosLock = new Object();
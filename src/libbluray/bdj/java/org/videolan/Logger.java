@@ -20,8 +20,46 @@
 package org.videolan;
 
 import java.io.PrintStream;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+/*
+ * Log messages are written to native log asynchronously
+ * from a ring buffer by a single writer thread.
+ *
+ * Messages are filtered by level before formatting:
+ *   org.videolan.loglevel             minimum level (TRACE, INFO, WARNING, ERROR)
+ *   org.videolan.loglevel.<logger>    minimum level for single logger
+ *   debug.trace=NO                    disable TRACE messages
+ *
+ * Source location of captured stdout / stderr lines is resolved only
+ * when org.videolan.log.location=YES (requires stack trace for each line).
+ * Asynchronous writing can be disabled with org.videolan.log.async=NO .
+ */
 
 public class Logger {
+
+    public static final int TRACE   = 0;
+    public static final int INFO    = 1;
+    public static final int WARNING = 2;
+    public static final int ERROR   = 3;
+    public static final int OFF     = 4;
+
+    /* asynchronous writer queue (initialized before stdout / stderr capture) */
+    private static final int QUEUE_SIZE = 1024;
+
+    private static final Object queueLock = new Object();
+    private static final boolean[] queueError = new boolean[QUEUE_SIZE];
+    private static final String[]  queueFile  = new String[QUEUE_SIZE];
+    private static final int[]     queueLine  = new int[QUEUE_SIZE];
+    private static final String[]  queueMsg   = new String[QUEUE_SIZE];
+    private static int queueHead = 0;
+    private static int queueCount = 0;
+    private static int dropped = 0;
+    private static boolean writerWaiting = false;
+    private static boolean writerBusy = false;
+    private static Thread writer = null;
+
     static {
         String prop;
 
@@ -41,10 +79,16 @@ public class Logger {
         if (prop != null && prop.equalsIgnoreCase("YES")) {
             use_throw = true;
         }
+        int level = INFO;
         prop = System.getProperty("debug.trace");
         if (prop == null || !prop.equalsIgnoreCase("NO")) {
             use_trace = true;
+            level = TRACE;
         }
+
+        defaultLevel = parseLevel(System.getProperty("org.videolan.loglevel"), level);
+        use_location = "YES".equalsIgnoreCase(System.getProperty("org.videolan.log.location"));
+        use_async = !"NO".equalsIgnoreCase(System.getProperty("org.videolan.log.async"));
     }
 
     private static class Location {
@@ -82,50 +126,96 @@ public class Logger {
 
         return new PrintStream(printStream, false, "UTF-8") {
             public void print(final String string) {
-                Logger.log(error, string);
+                Logger.capture(error, string);
             }
 
             public void println(final String string) {
-                Logger.log(error, string);
+                Logger.capture(error, string);
             }
         };
     }
 
+    private static int parseLevel(String level, int def) {
+        if (level == null)                     return def;
+        if (level.equalsIgnoreCase("TRACE"))   return TRACE;
+        if (level.equalsIgnoreCase("INFO"))    return INFO;
+        if (level.equalsIgnoreCase("WARNING")) return WARNING;
+        if (level.equalsIgnoreCase("ERROR"))   return ERROR;
+        if (level.equalsIgnoreCase("OFF"))     return OFF;
+        return def;
+    }
+
     public static Logger getLogger(String name) {
         return new Logger(name);
     }
 
-    private Logger(String name) {
+    private Logger(final String name) {
         this.name = name;
+
+        /* loggers may be created from Xlet context (class initialization) */
+        String prop = (String)AccessController.doPrivileged(
+            new PrivilegedAction() {
+                public Object run() {
+                    return System.getProperty("org.videolan.loglevel." + name);
+                }
+            });
+        this.level = parseLevel(prop, defaultLevel);
+    }
+
+    /* check before formatting messages in frequently called code */
+    public boolean isEnabled(int level) {
+        if (level == TRACE && !use_trace) {
+            return false;
+        }
+        return level >= this.level;
     }
 
     private static native void logN(boolean error, String file, int line, String msg);
+    private static native void logBatchN(boolean[] error, String[] file, int[] line, String[] msg, int count);
 
     private static void log(boolean error, String cls, String msg) {
-        logN(error, cls, 0, msg);
+        write(error, cls, 0, msg);
     }
 
     private static void log(boolean error, String msg) {
         Location l = getLocation(3);
-        logN(error, l.file + ":" + l.cls + "." + l.func, l.line, msg);
+        write(error, l.file + ":" + l.cls + "." + l.func, l.line, msg);
+    }
+
+    /* stdout / stderr */
+    private static void capture(boolean error, String msg) {
+        if ((error ? ERROR : INFO) < defaultLevel) {
+            return;
+        }
+        if (use_location) {
+            log(error, msg);
+        } else {
+            write(error, error ? "System.err" : "System.out", 0, msg);
+        }
     }
 
     public void trace(String msg) {
-        if (use_trace) {
+        if (use_trace && level <= TRACE) {
             log(false, name, msg);
         }
     }
 
     public void info(String msg) {
-        log(false, name, "INFO: " + msg);
+        if (level <= INFO) {
+            log(false, name, "INFO: " + msg);
+        }
     }
 
     public void warning(String msg) {
-        log(false, name, "WARNING: " + msg);
+        if (level <= WARNING) {
+            log(false, name, "WARNING: " + msg);
+        }
     }
 
     public void error(String msg) {
-        log(true, name, "ERROR: " + msg);
+        if (level <= ERROR) {
+            log(true, name, "ERROR: " + msg);
+        }
     }
 
     public void unimplemented() {
@@ -187,7 +277,153 @@ public class Logger {
         }
     }
 
+    /*
+     * Asynchronous writer
+     */
+
+    /* start asynchronous writer. Called from Libbluray.init() */
+    protected static void init() {
+        if (!use_async) {
+            return;
+        }
+        synchronized (queueLock) {
+            if (writer != null) {
+                return;
+            }
+            writer = (Thread)AccessController.doPrivileged(
+                new PrivilegedAction() {
+                    public Object run() {
+                        ThreadGroup group = Thread.currentThread().getThreadGroup();
+                        while (group.getParent() != null) {
+                            group = group.getParent();
+                        }
+                        return new Thread(group, new Runnable() {
+                                public void run() {
+                                    runWriter();
+                                }
+                            }, "BD-J Logger");
+                    }
+                });
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /*
+     * Write pending messages and stop writer thread.
+     * Called from Libbluray.shutdown(), before native methods are unregistered.
+     */
+    protected static void shutdown() {
+        Thread t;
+        synchronized (queueLock) {
+            t = writer;
+            writer = null;
+            queueLock.notifyAll();
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+            }
+        }
+    }
+
+    private static void write(boolean error, String file, int line, String msg) {
+        synchronized (queueLock) {
+            if (writer != null) {
+                if (queueCount >= QUEUE_SIZE) {
+                    /* never block the caller */
+                    dropped++;
+                    return;
+                }
+                int pos = (queueHead + queueCount) % QUEUE_SIZE;
+                queueError[pos] = error;
+                queueFile[pos] = file;
+                queueLine[pos] = line;
+                queueMsg[pos] = msg;
+                queueCount++;
+                if (writerWaiting) {
+                    queueLock.notify();
+                }
+                return;
+            }
+
+            /* writer not running: wait until pending messages have been written to keep order */
+            while (writerBusy) {
+                try {
+                    queueLock.wait();
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+        logN(error, file, line, msg);
+    }
+
+    private static void runWriter() {
+        boolean[] error = new boolean[QUEUE_SIZE + 1];
+        String[]  file  = new String[QUEUE_SIZE + 1];
+        int[]     line  = new int[QUEUE_SIZE + 1];
+        String[]  msg   = new String[QUEUE_SIZE + 1];
+
+        Thread self = Thread.currentThread();
+
+        while (true) {
+            int count = 0;
+            synchronized (queueLock) {
+                while (queueCount == 0 && dropped == 0 && writer == self) {
+                    writerWaiting = true;
+                    try {
+                        queueLock.wait();
+                    } catch (InterruptedException e) {
+                    }
+                    writerWaiting = false;
+                }
+                if (queueCount == 0 && dropped == 0) {
+                    /* stopped and all messages written */
+                    writerBusy = false;
+                    queueLock.notifyAll();
+                    return;
+                }
+                writerBusy = true;
+
+                if (dropped > 0) {
+                    error[count] = true;
+                    file[count] = "Logger";
+                    line[count] = 0;
+                    msg[count] = "ERROR: " + dropped + " log messages dropped (queue full)";
+                    count++;
+                    dropped = 0;
+                }
+                while (queueCount > 0) {
+                    error[count] = queueError[queueHead];
+                    file[count]  = queueFile[queueHead];
+                    line[count]  = queueLine[queueHead];
+                    msg[count]   = queueMsg[queueHead];
+                    queueFile[queueHead] = null;
+                    queueMsg[queueHead] = null;
+                    queueHead = (queueHead + 1) % QUEUE_SIZE;
+                    queueCount--;
+                    count++;
+                }
+            }
+
+            try {
+                logBatchN(error, file, line, msg, count);
+            } catch (Throwable t) {
+            }
+
+            for (int i = 0; i < count; i++) {
+                file[i] = null;
+                msg[i] = null;
+            }
+        }
+    }
+
     private String name;
+    private int level;
     private static boolean use_trace;
     private static boolean use_throw;
+    private static boolean use_location;
+    private static boolean use_async;
+    private static int defaultLevel;
 }
@@ -31,6 +31,8 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -75,6 +77,16 @@ public class MountManager {
 
             String path = BDJLoader.getCachedFile(System.getProperty("bluray.vfs.root") + relJarDir + jarStr + ".jar");
 
+            if (lazyMount && mountPoint == null) {
+                mountPoint = mountLazy(jarStr, path);
+                if (mountPoint != null) {
+                    logger.info("Mounting LAZY JAR " + jarId + " complete.");
+                    mountPoints.put(new Integer(jarId), mountPoint);
+                    BDJSecurityManager.invalidatePathCache();
+                    return mountPoint.getMountPoint();
+                }
+            }
+
             JarFile jar = null;
             try {
                 jar = new JarFile(path, false);
@@ -109,7 +121,9 @@ public class MountManager {
                         // logger.info("skip " + entry.getName());
                     } else {
 
-                        logger.info("   mount: " + entry.getName());
+                        if (logger.isEnabled(Logger.INFO)) {
+                            logger.info("   mount: " + entry.getName());
+                        }
 
                         /* make sure path exists */
                         File dir = out.getParentFile();
@@ -171,10 +185,81 @@ public class MountManager {
 
                 mountPoints.put(new Integer(jarId), mountPoint);
             }
+            BDJSecurityManager.invalidatePathCache();
 
             return mountPoint.getMountPoint();
         }
     }
+    /*
+     * Lazy mounting.
+     *
+     * Only JAR central directory is read when mounting. Directory tree is
+     * created, and files are extracted when they are accessed first time.
+     * Can be disabled with system property org.videolan.lazymount=NO .
+     */
+
+    private static MountPoint mountLazy(String jarStr, String path) throws MountException {
+        JarIndex index;
+        try {
+            index = new JarIndex(path);
+        } catch (IOException e) {
+            logger.info("Can't index " + path + " (" + e + "), extracting all files");
+            return null;
+        }
+
+        MountPoint mountPoint;
+        try {
+            mountPoint = new MountPoint(jarStr, true);
+        } catch (IOException e) {
+            index.close();
+            throw new MountException();
+        }
+        mountPoint.setIndex(index);
+
+        synchronized (lazyMountsLock) {
+            MountPoint[] mounts = new MountPoint[lazyMounts.length + 1];
+            System.arraycopy(lazyMounts, 0, mounts, 0, lazyMounts.length);
+            mounts[lazyMounts.length] = mountPoint;
+            lazyMounts = mounts;
+        }
+
+        return mountPoint;
+    }
+
+    private static MountPoint findLazyMount(String path) {
+        MountPoint[] mounts = lazyMounts;
+        for (int i = 0; i < mounts.length; i++) {
+            if (mounts[i].contains(path)) {
+                return mounts[i];
+            }
+        }
+        return null;
+    }
+
+    /* called from BDJSecurityManager and java.io.BDFileSystem when file is accessed */
+    public static void accessFile(String path) {
+        MountPoint mountPoint = findLazyMount(path);
+        if (mountPoint == null || !mountPoint.needsExtract(path)) {
+            return;
+        }
+
+        if (BDJXletContext.getCurrentContext() == null) {
+            mountPoint.extract(path);
+        } else {
+            /* Xlets can't write to cache. Dispatch extract request to privileged thread. */
+            new ExtractAction(mountPoint, path).execute();
+        }
+    }
+
+    /* called from java.io.BDFileSystem. Returns null if path is not inside lazily mounted JAR. */
+    public static String[] list(String path) {
+        MountPoint mountPoint = findLazyMount(path);
+        if (mountPoint == null) {
+            return null;
+        }
+        return mountPoint.list(path);
+    }
+
     /*
     private static void unmount(int jarId) {
         logger.info("Unmounting JAR: " + jarId);
@@ -213,11 +298,15 @@ public class MountManager {
             dirs = mountPoints.values().toArray();
             mountPoints.clear();
         }
+        synchronized (lazyMountsLock) {
+            lazyMounts = new MountPoint[0];
+        }
         if (dirs != null) {
             for (int i = 0; i < dirs.length; i++) {
                 ((MountPoint)dirs[i]).remove();
             }
         }
+        BDJSecurityManager.invalidatePathCache();
     }
 
     /* called from org/dvb/dsmcc/ServiceDomain */
@@ -244,6 +333,9 @@ public class MountManager {
 
     private static final String relJarDir = new String(File.separator + "BDMV" + File.separator + "JAR" + File.separator);
     private static Map mountPoints = new HashMap();
+    private static final boolean lazyMount = !"NO".equals(System.getProperty("org.videolan.lazymount"));
+    private static final Object lazyMountsLock = new Object();
+    private static volatile MountPoint[] lazyMounts = new MountPoint[0];
     private static final Logger logger = Logger.getLogger(MountManager.class.getName());
 
     private static class MountPoint {
@@ -262,6 +354,10 @@ public class MountManager {
         }
 
         public synchronized void remove() {
+            if (index != null) {
+                index.close();
+                index = null;
+            }
             if (dir != null) {
                 CacheDir.remove(dir);
                 dir = null;
@@ -269,6 +365,73 @@ public class MountManager {
             }
         }
 
+        /* create directory tree for lazy mount */
+        public synchronized void setIndex(JarIndex index) {
+            this.index = index;
+            this.root = dir.getAbsolutePath();
+            this.prefix = root + File.separator;
+
+            Iterator it = index.directories();
+            while (it.hasNext()) {
+                String name = (String)it.next();
+                File d = new File(dir, name.replace('/', File.separatorChar));
+                if (!d.isDirectory() && !d.mkdirs()) {
+                    logger.error("Error creating directory " + d.getPath());
+                }
+            }
+        }
+
+        public boolean contains(String path) {
+            return path.startsWith(prefix) || path.equals(root);
+        }
+
+        private String entryName(String path) {
+            if (path.length() <= prefix.length()) {
+                return "";
+            }
+            return path.substring(prefix.length()).replace(File.separatorChar, '/');
+        }
+
+        public synchronized boolean needsExtract(String path) {
+            if (index == null) {
+                return false;
+            }
+            String name = entryName(path);
+            return index.getEntry(name) != null && !extracted.contains(name);
+        }
+
+        public synchronized String[] list(String path) {
+            if (index == null) {
+                return null;
+            }
+            return index.list(entryName(path));
+        }
+
+        public synchronized void extract(String path) {
+            if (index == null) {
+                return;
+            }
+            String name = entryName(path);
+            JarIndex.Entry entry = index.getEntry(name);
+            if (entry == null || extracted.contains(name)) {
+                return;
+            }
+
+            /* mark before extracting: file access checks while extracting would recurse here */
+            extracted.add(name);
+
+            File out = new File(dir, name.replace('/', File.separatorChar));
+            try {
+                index.extract(entry, out);
+                if (logger.isEnabled(Logger.INFO)) {
+                    logger.info("   mount: " + name);
+                }
+            } catch (IOException e) {
+                logger.error("Error uncompressing " + name + ": " + e);
+                out.delete();
+            }
+        }
+
         public synchronized int incRefCount() {
             return ++refCount;
         }
@@ -292,8 +455,33 @@ public class MountManager {
         private File dir;
         private int refCount;
         private boolean classFiles;
+
+        /* lazy mount */
+        private JarIndex index = null;
+        private String root = null;
+        private String prefix = null;
+        private final HashSet extracted = new HashSet();
     };
 
+    private static class ExtractAction extends BDJAction {
+        public ExtractAction(MountPoint mountPoint, String path) {
+            this.mountPoint = mountPoint;
+            this.path = path;
+        }
+
+        protected void doAction() {
+            mountPoint.extract(path);
+        }
+
+        public void execute() {
+            BDJActionManager.getInstance().putCommand(this);
+            waitEnd();
+        }
+
+        private final MountPoint mountPoint;
+        private final String path;
+    }
+
     private static class MountAction extends BDJAction {
         public MountAction(int jarId) {
             this.jarId = jarId;
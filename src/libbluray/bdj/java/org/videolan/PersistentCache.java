@@ -0,0 +1,627 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import java.io.BDFileSystem;
+
+/*
+ * Cross-session cache of files copied from BD-ROM.
+ *
+ * Files are stored in <root>/<disc id>/<path in disc>. Index file records
+ * size and CRC32 of each stored file; cached copy is used only if it still
+ * matches the index and size of the file in disc.
+ * When total size exceeds the budget, least recently used discs are removed.
+ *
+ * Cached files are trusted (JARs are mounted and classes loaded from the cache).
+ * Cache root must be owned by the current user, not writable by others and
+ * not overlap storage that is writable by Xlets.
+ *
+ * Disabled by default. Enabled with system properties
+ * org.videolan.persistentcache (size budget in megabytes) and
+ * org.videolan.persistentcache.dir (cache location, no default).
+ */
+
+class PersistentCache {
+
+    private static final String INDEX_FILE = "index";
+
+    private static final Logger logger = Logger.getLogger(PersistentCache.class.getName());
+
+    private static File       root = null;
+    private static long       budget = 0;
+
+    /* current disc */
+    private static File       discDir = null;
+    private static Properties index = null;
+    private static long       totalSize = 0;
+    private static long       hits = 0;
+    private static long       misses = 0;
+
+    /*
+     * Select disc. Called from Libbluray.init().
+     */
+    protected static synchronized void init(String discID, String persistentRoot, String budaRoot) {
+        root = null;
+        discDir = null;
+        index = null;
+        hits = 0;
+        misses = 0;
+
+        String prop = System.getProperty("org.videolan.persistentcache");
+        if (prop == null) {
+            return;
+        }
+        try {
+            budget = Long.parseLong(prop) * 1024 * 1024;
+        } catch (NumberFormatException e) {
+            logger.error("Invalid persistent cache size " + prop);
+            return;
+        }
+        if (budget <= 0) {
+            return;
+        }
+
+        if (!isValidDiscID(discID)) {
+            logger.info("Persistent cache not used: no disc ID");
+            return;
+        }
+
+        String dir = System.getProperty("org.videolan.persistentcache.dir");
+        if (dir == null) {
+            logger.error("Persistent cache not used: org.videolan.persistentcache.dir not set");
+            return;
+        }
+
+        try {
+            File rootDir = new File(new File(dir).getCanonicalPath());
+            if (!rootDir.isDirectory() && !rootDir.mkdirs()) {
+                logger.error("Error creating directory " + rootDir.getPath());
+                return;
+            }
+            if (!isPrivateDir(rootDir)) {
+                logger.error("Persistent cache not used: " + rootDir.getPath() +
+                             " is not owned by current user or is writable by others");
+                return;
+            }
+            if (overlaps(rootDir, persistentRoot) || overlaps(rootDir, budaRoot)) {
+                logger.error("Persistent cache not used: " + rootDir.getPath() +
+                             " overlaps Xlet writable storage");
+                return;
+            }
+
+            File dDir = new File(rootDir, discID);
+            if (!dDir.isDirectory() && !dDir.mkdirs()) {
+                logger.error("Error creating directory " + dDir.getPath());
+                return;
+            }
+
+            /* mark disc as most recently used */
+            dDir.setLastModified(System.currentTimeMillis());
+
+            root = rootDir;
+            discDir = dDir;
+            index = loadIndex(discDir);
+        } catch (IOException e) {
+            logger.error("Error initializing persistent cache: " + e);
+            return;
+        }
+
+        totalSize = evict(0);
+
+        logger.info("Using persistent cache " + discDir.getPath() + " (" + index.size() + " files)");
+    }
+
+    /* called when creating security manager */
+    protected static synchronized String getRoot() {
+        return root != null ? root.getPath() + File.separator : null;
+    }
+
+    /*
+     * Copy file from persistent cache.
+     * Returns false if the file is not in cache.
+     */
+    protected static boolean restore(String relPath, String dstPath) {
+        File src;
+        long size;
+        long crc;
+
+        synchronized (PersistentCache.class) {
+            if (index == null) {
+                return false;
+            }
+
+            String value = index.getProperty(relPath);
+            if (value == null) {
+                misses++;
+                return false;
+            }
+            int pos = value.indexOf(',');
+            try {
+                size = Long.parseLong(value.substring(0, pos));
+                crc  = Long.parseLong(value.substring(pos + 1), 16);
+            } catch (Exception e) {
+                size = crc = -1;
+            }
+            src = new File(discDir, relPath);
+        }
+
+        File dst = new File(dstPath);
+        File dir = dst.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            logger.error("Error creating directory " + dir.getPath());
+            return false;
+        }
+
+        /* entry must match file in disc */
+        if (size != Libbluray.getBdRomFileSize(relPath)) {
+            logger.error("Persistent cache entry " + relPath + " does not match disc");
+            synchronized (PersistentCache.class) {
+                misses++;
+                if (index != null && index.remove(relPath) != null) {
+                    src.delete();
+                    saveIndex();
+                }
+            }
+            return false;
+        }
+
+        CRC32 crc32 = new CRC32();
+        if (src.length() == size && copy(src, dst, crc32) == size && crc32.getValue() == crc) {
+            synchronized (PersistentCache.class) {
+                hits++;
+            }
+            logger.info("restored " + relPath + " from persistent cache");
+            return true;
+        }
+
+        logger.error("Persistent cache entry " + relPath + " is corrupted");
+        dst.delete();
+        synchronized (PersistentCache.class) {
+            misses++;
+            if (index != null && index.remove(relPath) != null) {
+                src.delete();
+                saveIndex();
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Store file copied from disc.
+     */
+    protected static void store(String relPath, String srcPath) {
+        File dst;
+
+        synchronized (PersistentCache.class) {
+            if (index == null || index.getProperty(relPath) != null) {
+                return;
+            }
+            long size = new File(srcPath).length();
+            if (totalSize + size > budget) {
+                totalSize = evict(size);
+                if (totalSize + size > budget) {
+                    return;
+                }
+            }
+            dst = new File(discDir, relPath);
+        }
+
+        File dir = dst.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            logger.error("Error creating directory " + dir.getPath());
+            return;
+        }
+
+        CRC32 crc32 = new CRC32();
+        long size = copy(new File(srcPath), dst, crc32);
+        if (size < 0) {
+            dst.delete();
+            return;
+        }
+
+        synchronized (PersistentCache.class) {
+            if (index == null || !dst.getPath().startsWith(discDir.getPath())) {
+                /* disc changed while copying */
+                dst.delete();
+                return;
+            }
+            index.setProperty(relPath, size + "," + Long.toHexString(crc32.getValue()));
+            totalSize += size;
+            saveIndex();
+        }
+    }
+
+    /*
+     * Load all data files stored under directory 'dir' of current disc.
+     * Returns map (file name -> byte[]), empty if nothing is cached.
+     */
+    protected static synchronized Map loadData(String dir) {
+        HashMap result = new HashMap();
+        if (index == null) {
+            return result;
+        }
+
+        String prefix = dir + "/";
+        Iterator it = new ArrayList(index.keySet()).iterator();
+        while (it.hasNext()) {
+            String relPath = (String)it.next();
+            if (!relPath.startsWith(prefix)) {
+                continue;
+            }
+            String value = index.getProperty(relPath);
+            File file = new File(discDir, relPath);
+            byte[] data = readData(file);
+            CRC32 crc32 = new CRC32();
+            if (data != null) {
+                crc32.update(data);
+            }
+            if (data == null || !value.equals(data.length + "," + Long.toHexString(crc32.getValue()))) {
+                logger.error("Persistent cache entry " + relPath + " is corrupted");
+                index.remove(relPath);
+                file.delete();
+                saveIndex();
+                continue;
+            }
+            result.put(relPath.substring(prefix.length()), data);
+        }
+        return result;
+    }
+
+    /*
+     * Store data generated by BD-J core (not copied from disc).
+     */
+    protected static synchronized void storeData(String relPath, byte[] data) {
+        if (index == null || index.getProperty(relPath) != null) {
+            return;
+        }
+        if (totalSize + data.length > budget) {
+            totalSize = evict(data.length);
+            if (totalSize + data.length > budget) {
+                return;
+            }
+        }
+
+        File file = new File(discDir, relPath);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            logger.error("Error creating directory " + dir.getPath());
+            return;
+        }
+
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } catch (IOException e) {
+            logger.error("Error writing " + file.getPath() + ": " + e);
+            file.delete();
+            return;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        index.setProperty(relPath, data.length + "," + Long.toHexString(crc32.getValue()));
+        totalSize += data.length;
+        saveIndex();
+    }
+
+    protected static synchronized String getStatistics() {
+        if (index == null) {
+            return "persistent cache disabled";
+        }
+        return "persistent cache: " + index.size() + " files, " + totalSize + "/" + budget + " bytes, " +
+            hits + " hits, " + misses + " misses";
+    }
+
+    /*
+     * internal
+     */
+
+    private static boolean isValidDiscID(String discID) {
+        if (discID == null || discID.length() < 1) {
+            return false;
+        }
+        boolean zero = true;
+        for (int i = 0; i < discID.length(); i++) {
+            char c = discID.charAt(i);
+            if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+            if (c != '0') {
+                zero = false;
+            }
+        }
+        return !zero;
+    }
+
+    /* true if dir is inside Xlet writable root, or contains it */
+    private static boolean overlaps(File dir, String writableRoot) {
+        if (writableRoot == null) {
+            return false;
+        }
+        if (!writableRoot.endsWith(File.separator)) {
+            writableRoot = writableRoot + File.separator;
+        }
+        String path = dir.getPath() + File.separator;
+        return path.startsWith(writableRoot) || writableRoot.startsWith(path);
+    }
+
+    /*
+     * Check that directory is owned by current user and not writable by group or others.
+     * Uses java.nio.file (Java 7) with reflection. Returns false if it can't be checked.
+     */
+    private static boolean isPrivateDir(File dir) {
+        try {
+            Class filesClass      = Class.forName("java.nio.file.Files");
+            Class pathClass       = Class.forName("java.nio.file.Path");
+            Class fsClass         = Class.forName("java.nio.file.FileSystem");
+            Class lookupClass     = Class.forName("java.nio.file.attribute.UserPrincipalLookupService");
+            Class linkOptionClass = Class.forName("java.nio.file.LinkOption");
+
+            Object path = File.class.getMethod("toPath", new Class[0]).invoke(dir, new Object[0]);
+            Object options = Array.newInstance(linkOptionClass, 0);
+
+            Object owner = filesClass.getMethod("getOwner", new Class[] { pathClass, options.getClass() })
+                .invoke(null, new Object[] { path, options });
+            Object fs = pathClass.getMethod("getFileSystem", new Class[0]).invoke(path, new Object[0]);
+            Object lookup = fsClass.getMethod("getUserPrincipalLookupService", new Class[0]).invoke(fs, new Object[0]);
+            Object user = lookupClass.getMethod("lookupPrincipalByName", new Class[] { String.class })
+                .invoke(lookup, new Object[] { System.getProperty("user.name") });
+            if (owner == null || !owner.equals(user)) {
+                return false;
+            }
+
+            Set perms;
+            try {
+                perms = (Set)filesClass.getMethod("getPosixFilePermissions", new Class[] { pathClass, options.getClass() })
+                    .invoke(null, new Object[] { path, options });
+            } catch (InvocationTargetException e) {
+                if (e.getTargetException() instanceof UnsupportedOperationException) {
+                    /* no POSIX permissions (Windows): owner check only */
+                    return true;
+                }
+                throw e;
+            }
+            Iterator it = perms.iterator();
+            while (it.hasNext()) {
+                String perm = it.next().toString();
+                if (perm.equals("GROUP_WRITE") || perm.equals("OTHERS_WRITE")) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Throwable t) {
+            logger.error("Can't check persistent cache directory " + dir.getPath() + ": " + t);
+            return false;
+        }
+    }
+
+    private static byte[] readData(File file) {
+        long length = file.length();
+        if (length <= 0 || length > Integer.MAX_VALUE) {
+            return null;
+        }
+        byte[] data = new byte[(int)length];
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            int pos = 0;
+            while (pos < data.length) {
+                int r = in.read(data, pos, data.length - pos);
+                if (r <= 0) {
+                    return null;
+                }
+                pos += r;
+            }
+        } catch (IOException e) {
+            logger.error("Error reading " + file.getPath() + ": " + e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return data;
+    }
+
+    /* returns number of bytes copied, -1 on error */
+    private static long copy(File src, File dst, CRC32 crc) {
+        InputStream in = null;
+        OutputStream out = null;
+        long size = 0;
+        try {
+            in = new FileInputStream(src);
+            out = new FileOutputStream(dst);
+            byte[] buffer = new byte[64 * 1024];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, length);
+                out.write(buffer, 0, length);
+                size += length;
+            }
+        } catch (IOException e) {
+            logger.error("Error copying " + src.getPath() + ": " + e);
+            size = -1;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    size = -1;
+                }
+            }
+        }
+        return size;
+    }
+
+    private static Properties loadIndex(File dir) {
+        Properties p = new Properties();
+        File file = new File(dir, INDEX_FILE);
+        if (file.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                p.load(in);
+            } catch (IOException e) {
+                logger.error("Error reading " + file.getPath() + ": " + e);
+                p.clear();
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                    }
+                }
+            }
+        }
+        return p;
+    }
+
+    /* called with class lock held */
+    private static void saveIndex() {
+        File file = new File(discDir, INDEX_FILE);
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            index.store(out, null);
+        } catch (IOException e) {
+            logger.error("Error writing " + file.getPath() + ": " + e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    private static long dirSize(File dir) {
+        long size = 0;
+        String[] files = BDFileSystem.nativeList(dir);
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                File file = new File(dir, files[i]);
+                if (file.isDirectory()) {
+                    size += dirSize(file);
+                } else {
+                    size += file.length();
+                }
+            }
+        }
+        return size;
+    }
+
+    private static void remove(File dir) {
+        String[] files = BDFileSystem.nativeList(dir);
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                File file = new File(dir, files[i]);
+                if (file.isDirectory()) {
+                    remove(file);
+                } else if (!file.delete()) {
+                    logger.info("Error removing " + file.getPath());
+                }
+            }
+        }
+        if (!dir.delete()) {
+            logger.error("Error removing " + dir.getPath());
+        }
+    }
+
+    /*
+     * Remove least recently used discs until there is room for 'needed' bytes.
+     * Current disc is never removed.
+     * Called with class lock held. Returns total size of cache.
+     */
+    private static long evict(long needed) {
+        String[] names = BDFileSystem.nativeList(root);
+        if (names == null) {
+            return 0;
+        }
+
+        File[] dirs = new File[names.length];
+        long[] sizes = new long[names.length];
+        long total = 0;
+        for (int i = 0; i < names.length; i++) {
+            dirs[i] = new File(root, names[i]);
+        }
+
+        /* oldest first */
+        Arrays.sort(dirs, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    long t1 = ((File)o1).lastModified();
+                    long t2 = ((File)o2).lastModified();
+                    return t1 < t2 ? -1 : (t1 > t2 ? 1 : 0);
+                }
+            });
+
+        for (int i = 0; i < dirs.length; i++) {
+            if (dirs[i].isDirectory()) {
+                sizes[i] = dirSize(dirs[i]);
+                total += sizes[i];
+            }
+        }
+
+        for (int i = 0; i < dirs.length && total + needed > budget; i++) {
+            if (sizes[i] > 0 && !dirs[i].equals(discDir)) {
+                logger.info("Removing " + dirs[i].getName() + " from persistent cache");
+                remove(dirs[i]);
+                total -= sizes[i];
+            }
+        }
+
+        return total;
+    }
+}
@@ -27,9 +27,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 
 import java.io.BDFileSystem;
 import org.videolan.bdjo.AppCache;
+import org.videolan.bdjo.AppEntry;
 
 class VFSCache {
 
@@ -143,62 +148,253 @@ class VFSCache {
         return result;
     }
 
-    private void copyJarFile(String name) {
-        /* copy file from BDMV/JAR/ */
+    /*
+     * Caching pipeline.
+     *
+     * Each file from BDMV/JAR/ is cached as separate unit. Units are copied
+     * either by background workers, or on demand by the thread that needs
+     * the file. Threads accessing a file wait only for that file.
+     */
 
-        String relPath = jarDir + name;
-        String dstPath = cacheRoot + relPath;
+    private static final class CacheUnit {
+        CacheUnit(String relPath, String dstPath) {
+            this.relPath = relPath;
+            this.dstPath = dstPath;
+        }
 
-        if (BDFileSystem.nativeFileExists(dstPath)) {
-            //logger.info(dstPath + " already cached");
-            return;
+        final String relPath;
+        final String dstPath;
+        Thread  owner = null;   /* thread copying the file */
+    }
+
+    /* max. number of background caching threads */
+    private static final int MAX_WORKERS = 2;
+
+    /* protected by units */
+    private final HashMap    units = new HashMap();    /* relPath -> CacheUnit */
+    private final LinkedList queue = new LinkedList(); /* units waiting for background worker */
+    private int     numWorkers = 0;
+    private boolean shutdown = false;
+
+    /* copy file to cache, or wait until another thread has copied it */
+    private void cacheFile(String relPath, String dstPath, boolean create) {
+        CacheUnit unit;
+        synchronized (units) {
+            while (true) {
+                unit = (CacheUnit)units.get(relPath);
+                if (unit == null) {
+                    if (!create || BDFileSystem.nativeFileExists(dstPath)) {
+                        return;
+                    }
+                    unit = new CacheUnit(relPath, dstPath);
+                    units.put(relPath, unit);
+                    break;
+                }
+                if (unit.owner == null) {
+                    /* still queued */
+                    queue.remove(unit);
+                    break;
+                }
+                if (unit.owner == Thread.currentThread()) {
+                    /* avoid recursion from SecurityManager checks */
+                    return;
+                }
+                try {
+                    units.wait();
+                } catch (InterruptedException e) {
+                    logger.error("interrupted while waiting for " + relPath);
+                    return;
+                }
+            }
+            unit.owner = Thread.currentThread();
         }
 
-        Libbluray.cacheBdRomFile(relPath, dstPath);
+        copyUnit(unit);
+    }
+
+    /* wait until file or directory is cached. Queued files are copied in current thread. */
+    private void cachePending(String relPath) {
+        LinkedList pending = new LinkedList();
+        synchronized (units) {
+            if (units.isEmpty()) {
+                return;
+            }
+            String dirPath = relPath + File.separator;
+            Iterator it = units.values().iterator();
+            while (it.hasNext()) {
+                CacheUnit unit = (CacheUnit)it.next();
+                if (unit.relPath.equals(relPath) || unit.relPath.startsWith(dirPath)) {
+                    pending.add(unit);
+                }
+            }
+        }
 
-        logger.info("cached " + relPath);
+        Iterator it = pending.iterator();
+        while (it.hasNext()) {
+            CacheUnit unit = (CacheUnit)it.next();
+            cacheFile(unit.relPath, unit.dstPath, false);
+        }
     }
 
-    private void copyJarDir(String name, String[] files) {
+    private void copyUnit(CacheUnit unit) {
+        try {
+            if (Libbluray.cacheBdRomFile(unit.relPath, unit.dstPath)) {
+                if (logger.isEnabled(Logger.INFO)) {
+                    logger.info("cached " + unit.relPath);
+                }
+                /* Xlet threads can not write to persistent cache */
+                if (BDJXletContext.getCurrentContext() == null) {
+                    PersistentCache.store(unit.relPath, unit.dstPath);
+                }
+            } else {
+                logger.error("Error caching " + unit.relPath);
+            }
+        } finally {
+            synchronized (units) {
+                units.remove(unit.relPath);
+                units.notifyAll();
+            }
+        }
+    }
+
+    private void queueFile(String relPath) {
+        String dstPath = cacheRoot + relPath;
+        CacheUnit unit;
+        synchronized (units) {
+            if (units.get(relPath) != null || BDFileSystem.nativeFileExists(dstPath)) {
+                return;
+            }
+            unit = new CacheUnit(relPath, dstPath);
+            unit.owner = Thread.currentThread();
+            units.put(relPath, unit);
+        }
+
+        boolean restored = PersistentCache.restore(relPath, dstPath);
+
+        synchronized (units) {
+            if (restored) {
+                units.remove(relPath);
+            } else {
+                unit.owner = null;
+                queue.addLast(unit);
+            }
+            units.notifyAll();
+        }
+    }
 
+    private void queueDir(String name, String[] files) {
         for (int i = 0; i < files.length; i++) {
             String relPath = name + File.separator + files[i];
             String[] subFiles = Libbluray.listBdFiles(relPath, true);
             if (subFiles != null) {
-                copyJarDir(relPath, subFiles);
+                queueDir(relPath, subFiles);
             } else {
-                Libbluray.cacheBdRomFile(relPath, cacheRoot + relPath);
+                queueFile(relPath);
             }
         }
     }
 
-    private void copyJarDir(String name) {
-        /* copy directory from BDMV/JAR/ */
+    private void queueAppCache(AppCache appCache) {
+        String relPath = jarDir + appCache.getRefToName();
+        if (appCache.getType() == AppCache.JAR_FILE) {
+            queueFile(relPath + ".jar");
+        } else if (appCache.getType() == AppCache.DIRECTORY) {
+            String[] files = Libbluray.listBdFiles(relPath, true);
+            if (files != null) {
+                queueDir(relPath, files);
+            }
+        } else {
+            logger.error("unknown AppCache type " + appCache.getType());
+        }
+    }
 
-        String relPath = jarDir + name;
-        String[] files = Libbluray.listBdFiles(relPath, true);
-        if (files == null) {
-            return;
+    private void startWorkers() {
+        synchronized (units) {
+            shutdown = false;
+            while (numWorkers < MAX_WORKERS && numWorkers < queue.size()) {
+                Thread t = new Thread(null, new Runnable() {
+                        public void run() {
+                            runWorker();
+                        }
+                    }, "VFSCache worker " + numWorkers);
+                t.setDaemon(true);
+                numWorkers++;
+                t.start();
+            }
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            CacheUnit unit;
+            synchronized (units) {
+                if (shutdown || queue.isEmpty()) {
+                    numWorkers--;
+                    units.notifyAll();
+                    return;
+                }
+                unit = (CacheUnit)queue.removeFirst();
+                unit.owner = Thread.currentThread();
+            }
+            copyUnit(unit);
         }
-        copyJarDir(relPath, files);
-        logger.info("cached " + relPath);
     }
 
     /*
      * Add files from BD-ROM filesystem to cache
      * Called by BDJLoader when starting the title
+     *
+     * JAR files containing xlet initial classes are cached before returning.
+     * Remaining files are cached in background.
      */
-    protected synchronized void add(AppCache[] appCaches) {
+    protected void add(AppCache[] appCaches, AppEntry[] appTable) {
+
+        HashSet initialNames = new HashSet();
+        for (int i = 0; i < appTable.length; i++) {
+            String basePath = appTable[i].getBasePath();
+            if (basePath != null && basePath.length() >= 5) {
+                initialNames.add(basePath.substring(0, 5));
+            }
+        }
 
         for (int i = 0; i < appCaches.length; i++) {
-            if (appCaches[i].getType() == AppCache.JAR_FILE) {
-                copyJarFile(appCaches[i].getRefToName() + ".jar");
-            } else if (appCaches[i].getType() == AppCache.DIRECTORY) {
-                copyJarDir(appCaches[i].getRefToName());
-            } else {
-                logger.error("unknown AppCache type " + appCaches[i].getType());
+            queueAppCache(appCaches[i]);
+        }
+
+        for (int i = 0; i < appCaches.length; i++) {
+            if (initialNames.contains(appCaches[i].getRefToName())) {
+                cachePending(jarDir + appCaches[i].getRefToName() +
+                             (appCaches[i].getType() == AppCache.JAR_FILE ? ".jar" : ""));
             }
         }
+
+        startWorkers();
+    }
+
+    /*
+     * Stop background caching. Called at BD-J shutdown.
+     */
+    protected void shutdown() {
+        synchronized (units) {
+            shutdown = true;
+            while (!queue.isEmpty()) {
+                CacheUnit unit = (CacheUnit)queue.removeFirst();
+                units.remove(unit.relPath);
+            }
+            units.notifyAll();
+
+            /* wait for files being copied */
+            while (numWorkers > 0) {
+                try {
+                    units.wait();
+                } catch (InterruptedException e) {
+                    logger.error("interrupted while waiting for VFSCache workers");
+                    break;
+                }
+            }
+        }
+
+        logger.info(PersistentCache.getStatistics());
     }
 
     protected synchronized File addFont(String fontFile) {
@@ -212,10 +408,18 @@ class VFSCache {
             return dstFile;
         }
 
+        if (PersistentCache.restore(relPath, dstPath)) {
+            return dstFile;
+        }
+
         if (!Libbluray.cacheBdRomFile(relPath, dstPath)) {
             return null;
         }
 
+        if (BDJXletContext.getCurrentContext() == null) {
+            PersistentCache.store(relPath, dstPath);
+        }
+
         logger.info("cached font " + fontFile);
         return dstFile;
     }
@@ -265,46 +469,53 @@ class VFSCache {
             return;
         }
 
-        accessFileSynced(absPath);
+        String relPath = absPath.substring(vfsRootLength);
+
+        /* file may be queued or being copied */
+        cacheFile(relPath, cacheRoot + relPath, false);
+
+        if (accessFileSynced(absPath, relPath)) {
+            /* finally, copy the file to cache */
+            cacheFile(relPath, cacheRoot + relPath, true);
+        }
     }
 
-    private synchronized void accessFileSynced(String absPath) {
+    /* returns true if file should be copied to cache */
+    private synchronized boolean accessFileSynced(String absPath, String relPath) {
 
         if (inAccessFile) {
             /* avoid recursion from SecurityManager checks */
-            return;
+            return false;
         }
 
         try {
             inAccessFile = true;
-            accessFileImp(absPath);
+            return accessFileImp(absPath, relPath);
         } finally {
             inAccessFile = false;
         }
     }
 
-    private void accessFileImp(String absPath) {
+    private boolean accessFileImp(String absPath, String relPath) {
 
         if (BDFileSystem.nativeFileExists(absPath)) {
             /* file is already cached */
-            return;
+            return false;
         }
 
-        String relPath = absPath.substring(vfsRootLength);
         String[] names = Libbluray.listBdFiles(relPath, true);
         if (names != null) {
             /* this is directory. Make sure it exists. */
             Libbluray.cacheBdRomFile(relPath + File.separator, cacheRoot + relPath + File.separator);
-            return;
+            return false;
         }
 
         /* do not cache .m2ts streams */
         if (relPath.startsWith(streamDir)) {
-            return;
+            return false;
         }
 
-        /* finally, copy the file to cache */
-        Libbluray.cacheBdRomFile(relPath, cacheRoot + relPath);
+        return true;
     }
 
 
@@ -325,7 +536,7 @@ class VFSCache {
      * absPath: path in BD VFS.
      * return: path of cached file, absPath if file is not in cache.
      */
-    public synchronized String map(String absPath) {
+    public String map(String absPath) {
 
         if (cacheAll) {
             return absPath;
@@ -336,13 +547,20 @@ class VFSCache {
             return absPath;
         }
 
-        String cachePath = cacheRoot + absPath.substring(vfsRootLength);
+        String relPath = absPath.substring(vfsRootLength);
+
+        /* make sure file (or directory) is not being cached */
+        cachePending(relPath);
+
+        String cachePath = cacheRoot + relPath;
         if (!BDFileSystem.nativeFileExists(cachePath)) {
             //logger.info(cachePath + " not in VFS cache");
             return absPath;
         }
 
-        logger.info("using cached " + cachePath);
+        if (logger.isEnabled(Logger.INFO)) {
+            logger.info("using cached " + cachePath);
+        }
         return cachePath;
     }
 
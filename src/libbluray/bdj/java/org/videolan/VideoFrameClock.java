@@ -0,0 +1,106 @@
+/*
+ * This file is part of libbluray
+ * Copyright (C) 2019  VideoLAN
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.videolan;
+
+/*
+ * Video frame timing of the currently playing playlist.
+ *
+ * Frame duration comes from clip video stream info, frame phase is
+ * estimated from PTS (PSR_TIME) events.
+ * All times are System.nanoTime() based.
+ */
+
+public class VideoFrameClock {
+
+    private static final VideoFrameClock instance = new VideoFrameClock();
+
+    public static VideoFrameClock getInstance() {
+        return instance;
+    }
+
+    /* used when there is no video */
+    public static final long DEFAULT_FRAME_DURATION = 40000000L; /* 40 ms */
+
+    private VideoFrameClock() {
+        anchor = System.nanoTime();
+    }
+
+    /*
+     * rate: video_rate from clip info (StreamInfo.getRate())
+     */
+    public synchronized void setVideoRate(byte rate) {
+        long duration;
+        switch (rate) {
+            case 1:  duration = 41708333L; break; /* 24000/1001 */
+            case 2:  duration = 41666667L; break; /* 24 */
+            case 3:  duration = 40000000L; break; /* 25 */
+            case 4:  duration = 33366667L; break; /* 30000/1001 */
+            case 6:  duration = 20000000L; break; /* 50 */
+            case 7:  duration = 16683333L; break; /* 60000/1001 */
+            default: duration = 0; break;
+        }
+        if (duration != frameDuration) {
+            logger.info("video frame duration " + duration + " ns");
+            frameDuration = duration;
+        }
+    }
+
+    public synchronized void clear() {
+        frameDuration = 0;
+    }
+
+    /*
+     * pts: 45 kHz presentation time
+     */
+    public synchronized void setTime(int pts) {
+        if (frameDuration <= 0) {
+            return;
+        }
+        /* offset from previous frame start */
+        long offset = ((pts & 0xffffffffL) * 200000L / 9L) % frameDuration;
+        anchor = System.nanoTime() - offset;
+    }
+
+    /* frame duration (ns) */
+    public synchronized long getFrameDuration() {
+        if (frameDuration <= 0)
+            return DEFAULT_FRAME_DURATION;
+        return frameDuration;
+    }
+
+    public synchronized boolean isVideoSynced() {
+        return frameDuration > 0;
+    }
+
+    /* start time of next frame after time */
+    public synchronized long nextFrame(long time) {
+        long duration = getFrameDuration();
+        long diff = time - anchor;
+        if (diff < 0) {
+            return anchor;
+        }
+        return anchor + (diff / duration + 1) * duration;
+    }
+
+    private long frameDuration = 0;
+    private long anchor;
+
+    private static final Logger logger = Logger.getLogger(VideoFrameClock.class.getName());
+}
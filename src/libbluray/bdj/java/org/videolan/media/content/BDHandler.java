@@ -219,7 +219,7 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
         if (isClosed) return;
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_SEEK_TIME, now);
-        commandQueue.put(action);
+        putCommand(action);
         action.waitEnd();
     }
 
@@ -249,7 +249,7 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
         checkUnrealized();
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_SET_RATE, new Float(factor));
-        commandQueue.put(action);
+        putCommand(action);
         action.waitEnd();
         return rate;
     }
@@ -274,14 +274,14 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
         if (isClosed) return;
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_REALIZE, null);
-        commandQueue.put(action);
+        putCommand(action);
     }
 
     public void prefetch() {
         if (isClosed) return;
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_PREFETCH, null);
-        commandQueue.put(action);
+        putCommand(action);
     }
 
     public void syncStart(Time at) {
@@ -292,21 +292,21 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
         if (isClosed) return;
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_START, at);
-        commandQueue.put(action);
+        putCommand(action);
     }
 
     public void start() {
         if (isClosed) return;
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_START, null);
-        commandQueue.put(action);
+        putCommand(action);
     }
 
     public void stop() {
         if (isClosed) return;
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_STOP, null);
-        commandQueue.put(action);
+        putCommand(action);
         action.waitEnd();
     }
 
@@ -314,7 +314,7 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
         if (isClosed) return;
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_DEALLOCATE, null);
-        commandQueue.put(action);
+        putCommand(action);
         action.waitEnd();
 
         PlayerManager.getInstance().releaseResource(this);
@@ -327,7 +327,7 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
         deallocate();
 
         PlayerAction action = new PlayerAction(this, PlayerAction.ACTION_CLOSE, null);
-        commandQueue.put(action);
+        putCommand(action);
         action.waitEnd();
 
         isClosed = true;
@@ -340,10 +340,116 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
 
     protected boolean statusEvent(int event, int param) {
         if (isClosed) return false;
-        commandQueue.put(new PlayerAction(this, PlayerAction.ACTION_STATUS, new Integer(event), param));
+
+        synchronized (statusLock) {
+            statusEvents++;
+            if (isCoalescable(event)) {
+                /* only the latest value matters: update pending event */
+                StatusAction pending = pendingStatus[event];
+                if (pending != null) {
+                    pending.value = param;
+                    mergedStatusEvents++;
+                    return true;
+                }
+                pending = new StatusAction(this, event, param);
+                pendingStatus[event] = pending;
+                commandQueue.put(pending);
+            } else {
+                clearPendingStatus();
+                commandQueue.put(new StatusAction(this, event, param));
+            }
+        }
         return true;
     }
 
+    /* queue player command. Commands are ordering barriers for status events. */
+    protected void putCommand(BDJAction action) {
+        synchronized (statusLock) {
+            clearPendingStatus();
+            commandQueue.put(action);
+        }
+    }
+
+    /* keep order: later values can't be merged to events queued before a barrier.
+       Called with statusLock held. */
+    private void clearPendingStatus() {
+        for (int i = 0; i < pendingStatus.length; i++) {
+            pendingStatus[i] = null;
+        }
+    }
+
+    private static boolean isCoalescable(int event) {
+        switch (event) {
+        case Libbluray.BDJ_EVENT_PTS:
+        case Libbluray.BDJ_EVENT_SEEK:
+        case Libbluray.BDJ_EVENT_RATE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /* called from command queue */
+    private void doStatusAction(StatusAction action) {
+        int event = action.event;
+        int param;
+        synchronized (statusLock) {
+            if (event < pendingStatus.length && pendingStatus[event] == action) {
+                pendingStatus[event] = null;
+            }
+            param = action.value;
+        }
+
+        switch (event) {
+        case Libbluray.BDJ_EVENT_CHAPTER:
+            doChapterReached(param);
+            break;
+        case Libbluray.BDJ_EVENT_MARK:
+            doMarkReached(param);
+            break;
+        case Libbluray.BDJ_EVENT_PLAYITEM:
+            doPlayItemReached(param);
+            break;
+        case Libbluray.BDJ_EVENT_PLAYLIST:
+            doPlaylistStarted(param);
+            break;
+        case Libbluray.BDJ_EVENT_ANGLE:
+            doAngleChanged(param);
+            break;
+        case Libbluray.BDJ_EVENT_SUBTITLE:
+            doSubtitleChanged(param);
+            break;
+        case Libbluray.BDJ_EVENT_END_OF_PLAYLIST:
+            doEndOfMediaReached(param);
+            break;
+        case Libbluray.BDJ_EVENT_PTS:
+            doTimeChanged(param);
+            break;
+        case Libbluray.BDJ_EVENT_AUDIO_STREAM:
+            doAudioStreamChanged(param);
+            break;
+        case Libbluray.BDJ_EVENT_SECONDARY_STREAM:
+            doSecondaryStreamChanged(param);
+            break;
+        case Libbluray.BDJ_EVENT_UO_MASKED:
+            doUOMasked(param);
+            break;
+        case Libbluray.BDJ_EVENT_SEEK:
+            doSeekNotify(param * 2 /* 45kHz -> 90kHz */);
+            break;
+        case Libbluray.BDJ_EVENT_RATE:
+            float rate = (float)param / 90000.0f;
+            if (rate < 0.0f) rate = -rate;
+            if (rate < 0.01f) rate = 0.0f;
+            if (rate > 0.99f && rate < 1.01f) rate = 1.0f;
+            doRateChanged(rate);
+            break;
+        default:
+            System.err.println("Unknown ACTION_STATUS: id " + event + ", value " + param);
+            break;
+        }
+    }
+
     /*
      * handling of notifications from app
      */
@@ -586,6 +692,11 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
     }
 
     private void doCloseAction() {
+        synchronized (statusLock) {
+            if (mergedStatusEvents > 0) {
+                logger.info("status events: " + statusEvents + ", merged: " + mergedStatusEvents);
+            }
+        }
         doClose();
         notifyListeners(new ControllerClosedEvent(this));
         PlayerManager.getInstance().unregisterPlayer(this);
@@ -593,14 +704,9 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
 
     private static class PlayerAction extends BDJAction {
         private PlayerAction(BDHandler player, int action, Object param) {
-            this(player, action, param, -1);
-        }
-
-        private PlayerAction(BDHandler player, int action, Object param, int param2) {
             this.player = player;
             this.action = action;
             this.param = param;
-            this.param2 = param2;
         }
 
         protected void doAction() {
@@ -634,56 +740,6 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
                 player.doSetRate((Float)param);
                 break;
 
-            case ACTION_STATUS:
-                switch (((Integer)param).intValue()) {
-                case Libbluray.BDJ_EVENT_CHAPTER:
-                    player.doChapterReached(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_MARK:
-                    player.doMarkReached(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_PLAYITEM:
-                    player.doPlayItemReached(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_PLAYLIST:
-                    player.doPlaylistStarted(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_ANGLE:
-                    player.doAngleChanged(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_SUBTITLE:
-                    player.doSubtitleChanged(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_END_OF_PLAYLIST:
-                    player.doEndOfMediaReached(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_PTS:
-                    player.doTimeChanged(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_AUDIO_STREAM:
-                    player.doAudioStreamChanged(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_SECONDARY_STREAM:
-                    player.doSecondaryStreamChanged(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_UO_MASKED:
-                    player.doUOMasked(param2);
-                    break;
-                case Libbluray.BDJ_EVENT_SEEK:
-                    player.doSeekNotify(param2 * 2 /* 45kHz -> 90kHz */);
-                    break;
-                case Libbluray.BDJ_EVENT_RATE:
-                    float rate = (float)param2 / 90000.0f;
-                    if (rate < 0.0f) rate = -rate;
-                    if (rate < 0.01f) rate = 0.0f;
-                    if (rate > 0.99f && rate < 1.01f) rate = 1.0f;
-                    player.doRateChanged(rate);
-                    break;
-                default:
-                    System.err.println("Unknown ACTION_STATUS: id " + param + ", value " + param2);
-                    break;
-                }
-                break;
             default:
                 System.err.println("Unknown action " + action);
                 break;
@@ -693,7 +749,6 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
         private BDHandler player;
         private int action;
         private Object param;
-        private int param2;
 
         public static final int ACTION_INIT = 1;
         public static final int ACTION_REALIZE = 2;
@@ -705,8 +760,22 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
 
         public static final int ACTION_SEEK_TIME = 8;
         public static final int ACTION_SET_RATE = 9;
+    }
+
+    private static class StatusAction extends BDJAction {
+        private StatusAction(BDHandler player, int event, int value) {
+            this.player = player;
+            this.event = event;
+            this.value = value;
+        }
+
+        protected void doAction() {
+            player.doStatusAction(this);
+        }
 
-        public static final int ACTION_STATUS = 10;
+        private final BDHandler player;
+        private final int event;
+        private int value;  /* protected by player.statusLock */
     }
 
     protected int state = Unrealized;
@@ -722,6 +791,14 @@ public abstract class BDHandler implements Player, ServiceContentHandler {
 
     protected BDJActionQueue commandQueue;
 
+    /* status event coalescing */
+    private final Object statusLock = new Object();
+    private final StatusAction[] pendingStatus = new StatusAction[Libbluray.BDJ_EVENT_RATE + 1];
+    private long statusEvents = 0;
+    private long mergedStatusEvents = 0;
+
+    private static final Logger logger = Logger.getLogger(BDHandler.class.getName());
+
     public static final double TO_SECONDS = 1 / 90000.0d;
     public static final double FROM_SECONDS = 90000.0d;
     public static final double TO_NAROSECONDS = 1000000 / 90.0d;
@@ -42,7 +42,9 @@ import org.videolan.BDJAction;
 import org.videolan.Libbluray;
 import org.videolan.Logger;
 import org.videolan.PlaylistInfo;
+import org.videolan.StreamInfo;
 import org.videolan.TIClip;
+import org.videolan.VideoFrameClock;
 import org.videolan.media.content.BDHandler;
 
 import org.videolan.media.content.control.MediaTimePositionControlImpl;
@@ -168,6 +170,8 @@ public class Handler extends BDHandler {
                 }
 
                 updateTime(new Time(Libbluray.tellTime() * TO_SECONDS));
+                ((MediaTimeEventControlImpl)controls[4]).onSeek(Libbluray.tellTime());
+                updateVideoRate(RegisterAccess.getInstance().getPSR(RegisterAccess.PSR_PLAYITEM_ID));
 
                 currentLocator = new BDLocator(sourceLocator.toExternalForm());
             } catch (Exception e) {
@@ -206,6 +210,11 @@ public class Handler extends BDHandler {
         return super.doStop(eof);
     }
 
+    protected ControllerErrorEvent doDeallocate() {
+        VideoFrameClock.getInstance().clear();
+        return super.doDeallocate();
+    }
+
     protected void doSeekTime(Time at) {
         synchronized (this) {
             if ((state == Prefetched) || (state == Started)) {
@@ -215,6 +224,7 @@ public class Handler extends BDHandler {
                     return;
                 }
                 at = new Time(Libbluray.tellTime() * TO_SECONDS);
+                ((MediaTimeEventControlImpl)controls[4]).onSeek(Libbluray.tellTime());
             }
             super.doSeekTime(at);
         }
@@ -249,10 +259,19 @@ public class Handler extends BDHandler {
                 baseMediaTime = getMediaNanoseconds();
                 baseTime = getTimeBase().getNanoseconds();
             }
+            ((MediaTimeEventControlImpl)controls[4]).onRateChanged(rate);
             super.doRateChanged(rate);
         }
     }
 
+    protected void doTimeChanged(int time) {
+        MediaTimeEventControlImpl control = (MediaTimeEventControlImpl)controls[4];
+        /* PTS is clip time: use playlist time */
+        if (control.hasCues()) {
+            control.onTimeChanged(Libbluray.tellTime());
+        }
+    }
+
     BDLocator lastMarkLocator = null;
     protected void doChapterReached(int chapter) {
         if (chapter <= 0)
@@ -290,6 +309,7 @@ public class Handler extends BDHandler {
     }
 
     protected void doPlaylistStarted(int param) {
+        ((MediaTimeEventControlImpl)controls[4]).onSeek(Libbluray.tellTime());
     }
 
     protected void doPlayItemReached(int param) {
@@ -308,6 +328,8 @@ public class Handler extends BDHandler {
             System.err.println("" + e + "\n" + Logger.dumpStack(e));
         }
 
+        updateVideoRate(param);
+
         if (pi != null) {
             TIClip[] clips = pi.getClips();
             if (clips != null && param >= 0 && param < clips.length) {
@@ -316,6 +338,20 @@ public class Handler extends BDHandler {
         }
     }
 
+    /* update video frame timing used by graphics overlay */
+    private void updateVideoRate(int playitem) {
+        PlaylistInfo pi = this.pi;
+        if (pi == null)
+            return;
+        TIClip[] clips = pi.getClips();
+        if (clips == null || playitem < 0 || playitem >= clips.length)
+            return;
+        StreamInfo[] video = clips[playitem].getVideoStreams();
+        if (video != null && video.length > 0) {
+            VideoFrameClock.getInstance().setVideoRate(video[0].getRate());
+        }
+    }
+
     protected void doUOMasked(int position) {
         ((UOMaskTableControlImpl)controls[16]).onUOMasked(position);
     }
@@ -377,7 +413,9 @@ public class Handler extends BDHandler {
     }
 
     protected void doSeekNotify(long tick) {
-        super.doSeekNotify(Libbluray.tellTime());
+        long time = Libbluray.tellTime();
+        ((MediaTimeEventControlImpl)controls[4]).onSeek(time);
+        super.doSeekNotify(time);
     }
 
     /* used by DVBMediaSelectControlImpl */
@@ -444,7 +482,7 @@ public class Handler extends BDHandler {
             throw new IllegalArgumentException();
         PlaylistPlayerAction action = new PlaylistPlayerAction(
                 this, PlaylistPlayerAction.ACTION_SEEK_MARK, mark);
-        commandQueue.put(action);
+        putCommand(action);
         action.waitEnd();
     }
 
@@ -453,7 +491,7 @@ public class Handler extends BDHandler {
             throw new IllegalArgumentException();
         PlaylistPlayerAction action = new PlaylistPlayerAction(
                 this, PlaylistPlayerAction.ACTION_SEEK_PLAYITEM, item);
-        commandQueue.put(action);
+        putCommand(action);
         action.waitEnd();
     }
 
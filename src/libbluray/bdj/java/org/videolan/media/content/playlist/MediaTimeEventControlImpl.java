@@ -20,10 +20,25 @@
 package org.videolan.media.content.playlist;
 
 import java.awt.Component;
+import java.util.ArrayList;
 
+import org.davic.media.MediaTimeEvent;
 import org.davic.media.MediaTimeEventControl;
 import org.davic.media.MediaTimeEventListener;
 
+import org.videolan.BDJListeners;
+import org.videolan.BDJXletContext;
+import org.videolan.media.content.BDHandler;
+
+/*
+ * Media time cues.
+ *
+ * Cues are kept sorted by media time (90 kHz). Player media time updates
+ * (PTS events) are checked against the cue index, and cues crossed since
+ * the previous update are notified in playback order (in both directions).
+ * Seeks, playlist changes and other discontinuities do not trigger cues.
+ */
+
 public class MediaTimeEventControlImpl implements MediaTimeEventControl {
 
     public Component getControlComponent() {
@@ -31,11 +46,170 @@ public class MediaTimeEventControlImpl implements MediaTimeEventControl {
     }
 
     public void notifyWhen(MediaTimeEventListener listener, long mediaTime, int id) {
-        org.videolan.Logger.unimplemented("MediaTimeEventControlImpl", "notifyWhen");
+        if (listener == null) {
+            return;
+        }
+
+        Cue cue = new Cue(listener, mediaTime, id);
+
+        synchronized (cues) {
+            if (hasReleased) {
+                pruneReleased();
+            }
+            /* insert after cues with same time: keep order of registration */
+            int pos = search(cue.time);
+            cues.add(pos, cue);
+        }
     }
 
     public void notifyWhen(MediaTimeEventListener listener, long mediaTime) {
-        org.videolan.Logger.unimplemented("MediaTimeEventControlImpl", "notifyWhen");
+        notifyWhen(listener, mediaTime, 0);
+    }
+
+    /*
+     * Notifications from Handler (player thread)
+     */
+
+    protected boolean hasCues() {
+        synchronized (cues) {
+            return !cues.isEmpty();
+        }
+    }
+
+    /* playback position update */
+    protected void onTimeChanged(long time) {
+        ArrayList crossed = null;
+        long now = System.currentTimeMillis();
+
+        synchronized (cues) {
+            if (lastTime >= 0 && time != lastTime) {
+                /* max. expected position change since previous update */
+                long elapsed = Math.max(0, now - lastUpdate);
+                long maxDelta = (long)(elapsed * 90 * Math.max(1.0f, rate) * 1.5f) + MAX_JITTER;
+
+                if (Math.abs(time - lastTime) <= maxDelta) {
+                    crossed = findCrossed(lastTime, time);
+                }
+            }
+            lastTime = time;
+            lastUpdate = now;
+        }
+
+        if (crossed != null) {
+            for (int i = 0; i < crossed.size(); i++) {
+                ((Cue)crossed.get(i)).notifyListener(this);
+            }
+        }
+    }
+
+    /* seek, playlist change: new position, no events */
+    protected void onSeek(long time) {
+        synchronized (cues) {
+            lastTime = time;
+            lastUpdate = System.currentTimeMillis();
+        }
     }
 
+    protected void onRateChanged(float rate) {
+        synchronized (cues) {
+            this.rate = rate;
+            lastUpdate = System.currentTimeMillis();
+        }
+    }
+
+    /*
+     *
+     */
+
+    /* first index with cue time > time. Called with lock held. */
+    private int search(long time) {
+        int lo = 0, hi = cues.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (((Cue)cues.get(mid)).time <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /* cues crossed when moving from -> to, in playback order. Called with lock held. */
+    private ArrayList findCrossed(long from, long to) {
+        ArrayList result = null;
+        if (to > from) {
+            /* forward: from < cue <= to */
+            int end = search(to);
+            for (int i = search(from); i < end; i++) {
+                result = addCue(result, i);
+            }
+        } else {
+            /* backward: to <= cue < from */
+            int start = search(to - 1);
+            for (int i = search(from - 1) - 1; i >= start; i--) {
+                result = addCue(result, i);
+            }
+        }
+        if (hasReleased) {
+            pruneReleased();
+        }
+        return result;
+    }
+
+    private ArrayList addCue(ArrayList list, int index) {
+        Cue cue = (Cue)cues.get(index);
+        if (cue.isReleased()) {
+            hasReleased = true;
+            return list;
+        }
+        if (list == null) {
+            list = new ArrayList();
+        }
+        list.add(cue);
+        return list;
+    }
+
+    /* drop cues of terminated Xlets. Called with lock held. */
+    private void pruneReleased() {
+        hasReleased = false;
+        for (int i = cues.size() - 1; i >= 0; i--) {
+            if (((Cue)cues.get(i)).isReleased()) {
+                cues.remove(i);
+            }
+        }
+    }
+
+    private static class Cue {
+        Cue(MediaTimeEventListener listener, long mediaTime, int id) {
+            this.mediaTime = mediaTime;
+            this.time = (long)(mediaTime * BDHandler.FROM_NAROSECONDS);
+            this.id = id;
+            this.ctx = BDJXletContext.getCurrentContext();
+            this.listeners.add(listener);
+        }
+
+        boolean isReleased() {
+            return ctx != null && ctx.isReleased();
+        }
+
+        void notifyListener(Object source) {
+            listeners.putCallback(new MediaTimeEvent(source, mediaTime, id));
+        }
+
+        final long mediaTime;   /* ns */
+        final long time;        /* 90 kHz */
+        final int id;
+        private final BDJXletContext ctx;
+        private final BDJListeners listeners = new BDJListeners();
+    }
+
+    /* allowed position jitter between updates (90 kHz) */
+    private static final long MAX_JITTER = 90000;
+
+    private final ArrayList cues = new ArrayList();  /* sorted by time */
+    private long lastTime = -1;     /* 90 kHz */
+    private long lastUpdate = 0;    /* ms */
+    private float rate = 1.0f;
+    private boolean hasReleased = false;  /* cue of terminated Xlet was found */
 }
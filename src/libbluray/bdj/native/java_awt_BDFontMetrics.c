@@ -417,93 +417,80 @@ Java_java_awt_BDFontMetrics_destroyFontN(JNIEnv *env, jobject obj, jlong ftFace)
 #endif
 }
 
-JNIEXPORT jint JNICALL
-Java_java_awt_BDFontMetrics_charWidthN(JNIEnv * env, jobject obj, jlong ftFace, jchar c)
+JNIEXPORT void JNICALL
+Java_java_awt_BDFontMetrics_charWidthsN(JNIEnv * env, jobject obj, jlong ftFace, jchar first, jintArray widthArray)
 {
 #ifdef HAVE_FT2
+    jint widths[256];
+    jsize length, i;
     FT_Face face = (FT_Face)(intptr_t)ftFace;
 
     if (!face) {
-        return 0;
+        return;
     }
 
-    if (FT_Load_Char(face, c, FT_LOAD_DEFAULT))
-        return 0;
-    return face->glyph->metrics.horiAdvance >> 6;
-#else
-    return 0;
+    length = (*env)->GetArrayLength(env, widthArray);
+    if (length > 256)
+        length = 256;
+    if (length > 0x10000 - first)
+        length = 0x10000 - first;
+
+    for (i = 0; i < length; i++) {
+        if (FT_Load_Char(face, first + i, FT_LOAD_DEFAULT) == 0) {
+            widths[i] = face->glyph->metrics.horiAdvance >> 6;
+        } else {
+            widths[i] = 0;
+        }
+    }
+
+    (*env)->SetIntArrayRegion(env, widthArray, 0, length, widths);
 #endif
 }
 
-JNIEXPORT jint JNICALL
-Java_java_awt_BDFontMetrics_stringWidthN(JNIEnv * env, jobject obj, jlong ftFace, jstring string)
+JNIEXPORT jbyteArray JNICALL
+Java_java_awt_BDFontMetrics_renderGlyphN(JNIEnv * env, jobject obj, jlong ftFace, jchar c, jintArray metricsArray)
 {
 #ifdef HAVE_FT2
-    jsize length;
-    const jchar *chars;
-    jint i, width;
     FT_Face face = (FT_Face)(intptr_t)ftFace;
+    FT_Bitmap *bitmap;
+    jbyteArray mask;
+    jint metrics[5];
+    unsigned j;
 
     if (!face) {
-        return 0;
-    }
-
-    length = (*env)->GetStringLength(env, string);
-    if (length <= 0)
-        return 0;
-    chars = (*env)->GetStringCritical(env, string, NULL);
-    if (chars == NULL)
-        return 0;
-
-    for (i = 0, width = 0; i < length; i++) {
-        if (FT_Load_Char(face, chars[i], FT_LOAD_DEFAULT) == 0) {
-            width += face->glyph->metrics.horiAdvance >> 6;
-        }
+        return NULL;
     }
 
-    (*env)->ReleaseStringCritical(env, string, chars);
-
-    return width;
+    if (FT_Load_Char(face, c, FT_LOAD_RENDER))
+        return NULL;
 
-#else  /* HAVE_FT2 */
-    return 0;
-#endif /* HAVE_FT2 */
-}
+    bitmap = &face->glyph->bitmap;
 
-JNIEXPORT jint JNICALL
-Java_java_awt_BDFontMetrics_charsWidthN(JNIEnv * env, jobject obj, jlong ftFace, jcharArray charArray,
-                                                jint offset, jint length)
-{
-#ifdef HAVE_FT2
-    jchar *chars;
-    jint i, width;
-    FT_Face face = (FT_Face)(intptr_t)ftFace;
+    metrics[0] = face->glyph->bitmap_left;
+    metrics[1] = face->glyph->bitmap_top;
+    metrics[2] = bitmap->width;
+    metrics[3] = bitmap->rows;
+    metrics[4] = face->glyph->metrics.horiAdvance >> 6;
 
-    if (!face) {
-        return 0;
+    mask = (*env)->NewByteArray(env, bitmap->width * bitmap->rows);
+    if (!mask) {
+        return NULL;
     }
 
-    chars = (jchar *)malloc(sizeof(jchar) * length);
-    if (chars == NULL)
-        return 0;
-    (*env)->GetCharArrayRegion(env, charArray, offset, length, chars);
-    if ((*env)->ExceptionCheck(env)) {
-        X_FREE(chars);
-        return 0;
+    /* copy coverage rows without padding */
+    for (j = 0; j < bitmap->rows; j++) {
+        (*env)->SetByteArrayRegion(env, mask, j * bitmap->width, bitmap->width,
+                                   (const jbyte *)(bitmap->buffer + j * bitmap->pitch));
     }
 
-    for (i = 0, width = 0; i < length; i++) {
-        if (FT_Load_Char(face, chars[i], FT_LOAD_DEFAULT) == 0) {
-            width += face->glyph->metrics.horiAdvance >> 6;
-        }
+    (*env)->SetIntArrayRegion(env, metricsArray, 0, 5, metrics);
+    if ((*env)->ExceptionCheck(env)) {
+        return NULL;
     }
 
-    X_FREE(chars);
-
-    return width;
-
+    return mask;
 #else  /* HAVE_FT2 */
-    return 0;
+    return NULL;
 #endif /* HAVE_FT2 */
 }
 
@@ -549,19 +536,14 @@ Java_java_awt_BDFontMetrics_methods[] =
         VC(Java_java_awt_BDFontMetrics_destroyFontN),
     },
     {
-        CC("charWidthN"),
-        CC("(JC)I"),
-        VC(Java_java_awt_BDFontMetrics_charWidthN),
-    },
-    {
-        CC("stringWidthN"),
-        CC("(JLjava/lang/String;)I"),
-        VC(Java_java_awt_BDFontMetrics_stringWidthN),
+        CC("charWidthsN"),
+        CC("(JC[I)V"),
+        VC(Java_java_awt_BDFontMetrics_charWidthsN),
     },
     {
-        CC("charsWidthN"),
-        CC("(J[CII)I"),
-        VC(Java_java_awt_BDFontMetrics_charsWidthN),
+        CC("renderGlyphN"),
+        CC("(JC[I)[B"),
+        VC(Java_java_awt_BDFontMetrics_renderGlyphN),
     },
 };
 
@@ -72,27 +72,19 @@ JNIEXPORT void JNICALL Java_java_awt_BDFontMetrics_destroyFontN
 
 /*
  * Class:     java_awt_BDFontMetrics
- * Method:    charWidthN
- * Signature: (JC)I
+ * Method:    charWidthsN
+ * Signature: (JC[I)V
  */
-JNIEXPORT jint JNICALL Java_java_awt_BDFontMetrics_charWidthN
-  (JNIEnv *, jobject, jlong, jchar);
+JNIEXPORT void JNICALL Java_java_awt_BDFontMetrics_charWidthsN
+  (JNIEnv *, jobject, jlong, jchar, jintArray);
 
 /*
  * Class:     java_awt_BDFontMetrics
- * Method:    stringWidthN
- * Signature: (JLjava/lang/String;)I
+ * Method:    renderGlyphN
+ * Signature: (JC[I)[B
  */
-JNIEXPORT jint JNICALL Java_java_awt_BDFontMetrics_stringWidthN
-  (JNIEnv *, jobject, jlong, jstring);
-
-/*
- * Class:     java_awt_BDFontMetrics
- * Method:    charsWidthN
- * Signature: (J[CII)I
- */
-JNIEXPORT jint JNICALL Java_java_awt_BDFontMetrics_charsWidthN
-  (JNIEnv *, jobject, jlong, jcharArray, jint, jint);
+JNIEXPORT jbyteArray JNICALL Java_java_awt_BDFontMetrics_renderGlyphN
+  (JNIEnv *, jobject, jlong, jchar, jintArray);
 
 #ifdef __cplusplus
 }
@@ -403,6 +403,28 @@ JNIEXPORT jint JNICALL Java_org_videolan_Libbluray_cacheBdRomFileN(JNIEnv * env,
     return result;
 }
 
+JNIEXPORT jlong JNICALL Java_org_videolan_Libbluray_getBdRomFileSizeN(JNIEnv * env,
+                                                                       jclass cls, jlong np,
+                                                                       jstring jrel_path) {
+
+    BLURAY *bd = (BLURAY*)(intptr_t)np;
+    BD_DISC *disc = bd_get_disc(bd);
+    int64_t size;
+
+    const char *rel_path = (*env)->GetStringUTFChars(env, jrel_path, NULL);
+    if (!rel_path) {
+        BD_DEBUG(DBG_JNI | DBG_CRIT, "getBdRomFileSize() failed: no path\n");
+        return -1;
+    }
+    BD_DEBUG(DBG_JNI, "getBdRomFileSize(%s)\n", rel_path);
+
+    size = disc_bdrom_file_size(disc, rel_path);
+
+    (*env)->ReleaseStringUTFChars(env, jrel_path, rel_path);
+
+    return size;
+}
+
 JNIEXPORT jobjectArray JNICALL Java_org_videolan_Libbluray_listBdFilesN(JNIEnv * env,
                                                                         jclass cls, jlong np, jstring jpath,
                                                                         jboolean onlyBdRom) {
@@ -630,6 +652,142 @@ JNIEXPORT void JNICALL Java_org_videolan_Libbluray_updateGraphicN(JNIEnv * env,
     bd_unlock_osd_buffer(bd);
 }
 
+#define MAX_DIRTY_RECTS 16
+
+JNIEXPORT void JNICALL Java_org_videolan_Libbluray_updateGraphicRectsN(JNIEnv * env,
+        jclass cls, jlong np, jint width, jint height, jintArray rgbArray,
+        jintArray rectArray, jint numRects) {
+
+    BLURAY* bd = (BLURAY*)(intptr_t)np;
+    jint rects[4 * MAX_DIRTY_RECTS];
+    jint x0, y0, x1, y1;
+    int i;
+
+    BD_DEBUG(DBG_JNI, "updateGraphicRectsN(%ld rects)\n", (long)numRects);
+
+    /* app callback not initialized ? */
+    if (!bd) {
+        return;
+    }
+
+    /* nothing to draw ? */
+    if (!rgbArray || !rectArray || numRects < 1) {
+        return;
+    }
+
+    if (numRects > MAX_DIRTY_RECTS) {
+        BD_DEBUG(DBG_BDJ | DBG_CRIT, "updateGraphicRectsN(): too many rectangles (%ld)\n", (long)numRects);
+        numRects = MAX_DIRTY_RECTS;
+    }
+
+    (*env)->GetIntArrayRegion(env, rectArray, 0, 4 * numRects, rects);
+    if ((*env)->ExceptionOccurred(env)) {
+        BD_DEBUG(DBG_BDJ | DBG_CRIT, "updateGraphicRectsN(): invalid rectangle array\n");
+        (*env)->ExceptionDescribe(env);
+        (*env)->ExceptionClear(env);
+        return;
+    }
+
+    /* validate and calculate bounding box */
+    x0 = width; y0 = height; x1 = -1; y1 = -1;
+    for (i = 0; i < numRects; i++) {
+        jint *r = rects + 4 * i;
+        r[0] = BD_MAX(r[0], 0);
+        r[1] = BD_MAX(r[1], 0);
+        r[2] = BD_MIN(r[2], width - 1);
+        r[3] = BD_MIN(r[3], height - 1);
+        if (r[2] < r[0] || r[3] < r[1]) {
+            continue;
+        }
+        x0 = BD_MIN(x0, r[0]);
+        y0 = BD_MIN(y0, r[1]);
+        x1 = BD_MAX(x1, r[2]);
+        y1 = BD_MAX(y1, r[3]);
+    }
+    if (x1 < x0 || y1 < y0) {
+        return;
+    }
+
+    BD_ARGB_BUFFER *buf = bd_lock_osd_buffer(bd);
+
+    if (!buf) {
+
+        /* return java array */
+
+        jint *image = (jint *)(*env)->GetPrimitiveArrayCritical(env, rgbArray, NULL);
+        if (image) {
+            bd_bdj_osd_rects_cb(bd, (const unsigned *)image, (int)width, (int)height,
+                                (const int *)rects, (int)numRects);
+            (*env)->ReleasePrimitiveArrayCritical(env, rgbArray, image, JNI_ABORT);
+        } else {
+            BD_DEBUG(DBG_BDJ | DBG_CRIT, "GetPrimitiveArrayCritical() failed\n");
+        }
+
+    } else if (buf->width < width || buf->height < height) {
+
+        /* buffer holds only dirty area: update bounding box */
+        _updateGraphic(env, bd, width, height, rgbArray, x0, y0, x1, y1, buf);
+
+    } else {
+
+        /* copy dirty rectangles to application-allocated buffer */
+
+        /* set dirty area before lock() */
+        buf->dirty[BD_OVERLAY_IG].x0 = (uint16_t)x0;
+        buf->dirty[BD_OVERLAY_IG].x1 = (uint16_t)x1;
+        buf->dirty[BD_OVERLAY_IG].y0 = (uint16_t)y0;
+        buf->dirty[BD_OVERLAY_IG].y1 = (uint16_t)y1;
+
+        if (buf->lock) {
+            buf->lock(buf);
+        }
+
+        if (!buf->buf[BD_OVERLAY_IG]) {
+            BD_DEBUG(DBG_BDJ | DBG_CRIT, "ARGB frame buffer missing\n");
+            if (buf->unlock) {
+                buf->unlock(buf);
+            }
+            bd_unlock_osd_buffer(bd);
+            return;
+        }
+
+        for (i = 0; i < numRects; i++) {
+            jint *r = rects + 4 * i;
+            jint *dst, y;
+            jsize offset;
+
+            if (r[2] < r[0] || r[3] < r[1]) {
+                continue;
+            }
+
+            dst    = (jint*)buf->buf[BD_OVERLAY_IG] + r[1] * buf->width + r[0];
+            offset = r[1] * width + r[0];
+
+            for (y = r[1]; y <= r[3]; y++) {
+                (*env)->GetIntArrayRegion(env, rgbArray, offset, r[2] - r[0] + 1, dst);
+                offset += width;
+                dst += buf->width;
+            }
+        }
+
+        /* check for errors */
+        if ((*env)->ExceptionOccurred(env)) {
+            BD_DEBUG(DBG_BDJ | DBG_CRIT, "Array access error\n");
+            (*env)->ExceptionDescribe(env);
+            (*env)->ExceptionClear(env);
+        }
+
+        if (buf->unlock) {
+            buf->unlock(buf);
+        }
+
+        bd_bdj_osd_rects_cb(bd, buf->buf[BD_OVERLAY_IG], (int)width, (int)height,
+                            (const int *)rects, (int)numRects);
+    }
+
+    bd_unlock_osd_buffer(bd);
+}
+
 #define CC (char*)(uintptr_t)  /* cast a literal from (const char*) */
 #define VC (void*)(uintptr_t)  /* cast function pointer to void* */
 
@@ -721,6 +879,11 @@ Java_org_videolan_Libbluray_methods[] =
         CC("(JLjava/lang/String;Ljava/lang/String;)I"),
         VC(Java_org_videolan_Libbluray_cacheBdRomFileN),
     },
+    {
+        CC("getBdRomFileSizeN"),
+        CC("(JLjava/lang/String;)J"),
+        VC(Java_org_videolan_Libbluray_getBdRomFileSizeN),
+    },
     {
         CC("listBdFilesN"),
         CC("(JLjava/lang/String;Z)[Ljava/lang/String;"),
@@ -736,6 +899,11 @@ Java_org_videolan_Libbluray_methods[] =
         CC("(JII[IIIII)V"),
         VC(Java_org_videolan_Libbluray_updateGraphicN),
     },
+    {
+        CC("updateGraphicRectsN"),
+        CC("(JII[I[II)V"),
+        VC(Java_org_videolan_Libbluray_updateGraphicRectsN),
+    },
 };
 
 BD_PRIVATE CPP_EXTERN const int
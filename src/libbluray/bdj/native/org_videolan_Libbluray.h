@@ -220,6 +220,14 @@ JNIEXPORT jint JNICALL Java_org_videolan_Libbluray_writeRegN
 JNIEXPORT jint JNICALL Java_org_videolan_Libbluray_readRegN
   (JNIEnv *, jclass, jlong, jint, jint);
 
+/*
+ * Class:     org_videolan_Libbluray
+ * Method:    getBdRomFileSizeN
+ * Signature: (JLjava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_org_videolan_Libbluray_getBdRomFileSizeN
+(JNIEnv *, jclass, jlong, jstring);
+
 /*
  * Class:     org_videolan_Libbluray
  * Method:    cacheBdRomFileN
@@ -253,6 +261,14 @@ JNIEXPORT jobject JNICALL Java_org_videolan_Libbluray_getBdjoN
 JNIEXPORT void JNICALL Java_org_videolan_Libbluray_updateGraphicN
 (JNIEnv *, jclass, jlong, jint, jint, jintArray, jint, jint, jint, jint);
 
+/*
+ * Class:     org_videolan_Libbluray
+ * Method:    updateGraphicRectsN
+ * Signature: (JII[I[II)V
+ */
+JNIEXPORT void JNICALL Java_org_videolan_Libbluray_updateGraphicRectsN
+(JNIEnv *, jclass, jlong, jint, jint, jintArray, jintArray, jint);
+
 #ifdef __cplusplus
 }
 #endif
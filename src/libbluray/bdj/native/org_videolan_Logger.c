@@ -70,6 +70,68 @@ Java_org_videolan_Logger_logN(JNIEnv *env, jclass cls, jboolean error, jstring j
     (*env)->ReleaseStringUTFChars(env, string, msg);
 }
 
+JNIEXPORT void JNICALL
+Java_org_videolan_Logger_logBatchN(JNIEnv *env, jclass cls, jbooleanArray jerror, jobjectArray jfile,
+                                   jintArray jline, jobjectArray jmsg, jint count)
+{
+    jboolean *error;
+    jint *line;
+    jint i;
+
+    if (count <= 0) {
+        return;
+    }
+
+    error = (*env)->GetBooleanArrayElements(env, jerror, NULL);
+    line  = (*env)->GetIntArrayElements(env, jline, NULL);
+    if (!error || !line) {
+        goto out;
+    }
+
+    for (i = 0; i < count; i++) {
+        uint32_t mask = DBG_BDJ;
+        jstring jf, jm;
+
+        if (error[i]) {
+            mask |= DBG_CRIT;
+        }
+        if (!(mask & debug_mask)) {
+            continue;
+        }
+
+        jf = (jstring)(*env)->GetObjectArrayElement(env, jfile, i);
+        jm = (jstring)(*env)->GetObjectArrayElement(env, jmsg, i);
+
+        if (jm && (*env)->GetStringLength(env, jm) > 0) {
+            const char *msg  = (*env)->GetStringUTFChars(env, jm, NULL);
+            const char *file = jf ? (*env)->GetStringUTFChars(env, jf, NULL) : NULL;
+
+            if (msg) {
+                bd_debug(file ? file : "JVM", line[i], mask, "%s\n", msg);
+                (*env)->ReleaseStringUTFChars(env, jm, msg);
+            }
+            if (file) {
+                (*env)->ReleaseStringUTFChars(env, jf, file);
+            }
+        }
+
+        if (jf) {
+            (*env)->DeleteLocalRef(env, jf);
+        }
+        if (jm) {
+            (*env)->DeleteLocalRef(env, jm);
+        }
+    }
+
+ out:
+    if (line) {
+        (*env)->ReleaseIntArrayElements(env, jline, line, JNI_ABORT);
+    }
+    if (error) {
+        (*env)->ReleaseBooleanArrayElements(env, jerror, error, JNI_ABORT);
+    }
+}
+
 #define CC (char*)(uintptr_t)  /* cast a literal from (const char*) */
 #define VC (void*)(uintptr_t)  /* cast function pointer to void* */
 
@@ -81,6 +143,11 @@ Java_org_videolan_Logger_methods[] =
         CC("(ZLjava/lang/String;ILjava/lang/String;)V"),
         VC(Java_org_videolan_Logger_logN),
     },
+    {
+        CC("logBatchN"),
+        CC("([Z[Ljava/lang/String;[I[Ljava/lang/String;I)V"),
+        VC(Java_org_videolan_Logger_logBatchN),
+    },
 };
 
 BD_PRIVATE CPP_EXTERN const int
@@ -21,6 +21,14 @@ extern "C" {
 JNIEXPORT void JNICALL Java_org_videolan_Logger_logN
   (JNIEnv *, jclass, jboolean, jstring, jint, jstring);
 
+/*
+ * Class:     org_videolan_Logger
+ * Method:    logBatchN
+ * Signature: ([Z[Ljava/lang/String;[I[Ljava/lang/String;I)V
+ */
+JNIEXPORT void JNICALL Java_org_videolan_Logger_logBatchN
+  (JNIEnv *, jclass, jbooleanArray, jobjectArray, jintArray, jobjectArray, jint);
+
 #ifdef __cplusplus
 }
 #endif
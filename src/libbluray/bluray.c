@@ -1288,6 +1288,42 @@ void bd_unlock_osd_buffer(BLURAY *bd)
 /*
  * handle graphics updates from BD-J layer
  */
+static void _bdj_osd_set_dirty(BLURAY *bd, int x0, int y0, int x1, int y1)
+{
+    if (bd->argb_buffer) {
+        bd->argb_buffer->dirty[BD_OVERLAY_IG].x0 = x0;
+        bd->argb_buffer->dirty[BD_OVERLAY_IG].x1 = x1;
+        bd->argb_buffer->dirty[BD_OVERLAY_IG].y0 = y0;
+        bd->argb_buffer->dirty[BD_OVERLAY_IG].y1 = y1;
+    }
+}
+
+static void _bdj_osd_reset_dirty(BLURAY *bd)
+{
+    if (bd->argb_buffer) {
+        bd->argb_buffer->dirty[BD_OVERLAY_IG].x0 = bd->argb_buffer->width;
+        bd->argb_buffer->dirty[BD_OVERLAY_IG].x1 = bd->argb_buffer->height;
+        bd->argb_buffer->dirty[BD_OVERLAY_IG].y0 = 0;
+        bd->argb_buffer->dirty[BD_OVERLAY_IG].y1 = 0;
+    }
+}
+
+static void _bdj_osd_region(BLURAY *bd, BD_ARGB_OVERLAY *aov, const unsigned *img, int w, int h,
+                            int x0, int y0, int x1, int y1)
+{
+    /* pass only changed region */
+    if (bd->argb_buffer && (bd->argb_buffer->width < w || bd->argb_buffer->height < h)) {
+        aov->argb   = img;
+    } else {
+        aov->argb   = img + x0 + y0 * w;
+    }
+    aov->stride = w;
+    aov->x      = x0;
+    aov->y      = y0;
+    aov->w      = x1 - x0 + 1;
+    aov->h      = y1 - y0 + 1;
+}
+
 void bd_bdj_osd_cb(BLURAY *bd, const unsigned *img, int w, int h,
                    int x0, int y0, int x1, int y1)
 {
@@ -1323,25 +1359,10 @@ void bd_bdj_osd_cb(BLURAY *bd, const unsigned *img, int w, int h,
         return;
     }
 
-    /* pass only changed region */
-    if (bd->argb_buffer && (bd->argb_buffer->width < w || bd->argb_buffer->height < h)) {
-        aov.argb   = img;
-    } else {
-        aov.argb   = img + x0 + y0 * w;
-    }
-    aov.stride = w;
-    aov.x      = x0;
-    aov.y      = y0;
-    aov.w      = x1 - x0 + 1;
-    aov.h      = y1 - y0 + 1;
+    _bdj_osd_region(bd, &aov, img, w, h, x0, y0, x1, y1);
 
-    if (bd->argb_buffer) {
-        /* set dirty region */
-        bd->argb_buffer->dirty[BD_OVERLAY_IG].x0 = x0;
-        bd->argb_buffer->dirty[BD_OVERLAY_IG].x1 = x1;
-        bd->argb_buffer->dirty[BD_OVERLAY_IG].y0 = y0;
-        bd->argb_buffer->dirty[BD_OVERLAY_IG].y1 = y1;
-    }
+    /* set dirty region */
+    _bdj_osd_set_dirty(bd, x0, y0, x1, y1);
 
     /* draw */
     aov.cmd = BD_ARGB_OVERLAY_DRAW;
@@ -1351,13 +1372,72 @@ void bd_bdj_osd_cb(BLURAY *bd, const unsigned *img, int w, int h,
     aov.cmd = BD_ARGB_OVERLAY_FLUSH;
     bd->argb_overlay_proc(bd->argb_overlay_proc_handle, &aov);
 
-    if (bd->argb_buffer) {
-        /* reset dirty region */
-        bd->argb_buffer->dirty[BD_OVERLAY_IG].x0 = bd->argb_buffer->width;
-        bd->argb_buffer->dirty[BD_OVERLAY_IG].x1 = bd->argb_buffer->height;
-        bd->argb_buffer->dirty[BD_OVERLAY_IG].y0 = 0;
-        bd->argb_buffer->dirty[BD_OVERLAY_IG].y1 = 0;
+    /* reset dirty region */
+    _bdj_osd_reset_dirty(bd);
+}
+
+/*
+ * multiple dirty rectangles: draw each rectangle, commit changes once.
+ * rects: num_rects * (x0, y0, x1, y1)
+ */
+void bd_bdj_osd_rects_cb(BLURAY *bd, const unsigned *img, int w, int h,
+                         const int *rects, int num_rects)
+{
+    BD_ARGB_OVERLAY aov;
+    int x0 = w, y0 = h, x1 = -1, y1 = -1;
+    int i;
+
+    if (!img) {
+        return;
     }
+
+    if (!bd->argb_overlay_proc) {
+        _queue_event(bd, BD_EVENT_MENU, 0);
+        return;
+    }
+
+    /* bounding box */
+    for (i = 0; i < num_rects; i++) {
+        const int *r = rects + 4 * i;
+        if (r[2] < r[0] || r[3] < r[1]) {
+            continue;
+        }
+        x0 = BD_MIN(x0, r[0]);
+        y0 = BD_MIN(y0, r[1]);
+        x1 = BD_MAX(x1, r[2]);
+        y1 = BD_MAX(y1, r[3]);
+    }
+
+    /* no changed pixels ? */
+    if (x1 < x0 || y1 < y0) {
+        return;
+    }
+
+    memset(&aov, 0, sizeof(aov));
+    aov.pts   = -1;
+    aov.plane = BD_OVERLAY_IG;
+
+    /* set dirty region */
+    _bdj_osd_set_dirty(bd, x0, y0, x1, y1);
+
+    /* draw */
+    aov.cmd = BD_ARGB_OVERLAY_DRAW;
+    for (i = 0; i < num_rects; i++) {
+        const int *r = rects + 4 * i;
+        if (r[2] < r[0] || r[3] < r[1]) {
+            continue;
+        }
+        _bdj_osd_region(bd, &aov, img, w, h, r[0], r[1], r[2], r[3]);
+        bd->argb_overlay_proc(bd->argb_overlay_proc_handle, &aov);
+    }
+
+    /* commit changes */
+    _bdj_osd_region(bd, &aov, img, w, h, x0, y0, x1, y1);
+    aov.cmd = BD_ARGB_OVERLAY_FLUSH;
+    bd->argb_overlay_proc(bd->argb_overlay_proc_handle, &aov);
+
+    /* reset dirty region */
+    _bdj_osd_reset_dirty(bd);
 }
 
 /*
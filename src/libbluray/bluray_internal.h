@@ -87,5 +87,7 @@ BD_PRIVATE void                     bd_unlock_osd_buffer(struct bluray *bd);
 
 BD_PRIVATE void  bd_bdj_osd_cb(struct bluray *bd, const unsigned *img, int w, int h,
                                int x0, int y0, int x1, int y1);
+BD_PRIVATE void  bd_bdj_osd_rects_cb(struct bluray *bd, const unsigned *img, int w, int h,
+                                     const int *rects, int num_rects);
 
 #endif  /* _BLURAY_INTERNAL_H_ */
@@ -583,6 +583,21 @@ int disc_cache_bdrom_file(BD_DISC *p, const char *rel_path, const char *cache_pa
     return 0;
 }
 
+int64_t disc_bdrom_file_size(BD_DISC *p, const char *rel_path)
+{
+    BD_FILE_H *fp;
+    int64_t    size;
+
+    fp = p->pf_file_open_bdrom(p->fs_handle, rel_path);
+    if (!fp) {
+        return -1;
+    }
+
+    size = file_size(fp);
+    file_close(fp);
+    return size;
+}
+
 /*
  * persistent properties storage
  */